@@ -40,7 +40,8 @@ function App() {
         method: 'POST'
       });
 
-      if (response.ok) {
+      // 204 - платеж не сохранен (дубликат или заглушка недоступна), тела нет
+      if (response.status === 201) {
         const newPayment = await response.json();
 
         // Добавляем созданный платеж в список созданных
@@ -93,6 +94,20 @@ function App() {
     loadPaymentsWithLimit(10);
   }, []);
 
+  // В режиме последних платежей новые приходят из живой ленты, без повторных запросов к БД.
+  // EventSource сам переподключается и передает Last-Event-ID, сервер досылает пропущенное
+  useEffect(() => {
+    if (showMode !== 'latest') {
+      return undefined;
+    }
+    const feed = new EventSource(`${API_URL}/payments/feed`);
+    feed.addEventListener('payment', (event) => {
+      const payment = JSON.parse(event.data);
+      setPayments(prev => [payment, ...prev.filter(p => p.id !== payment.id)].slice(0, Math.max(prev.length, 1)));
+    });
+    return () => feed.close();
+  }, [showMode]);
+
   // Определяем заголовок в зависимости от режима
   const getTableTitle = () => {
     switch(showMode) {
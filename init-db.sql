@@ -1,5 +1,8 @@
+-- Платежи секционированы по created_at (одна секция на день), см. ensure_payments_partitions.
+-- Первичный и уникальные ключи секционированной таблицы обязаны включать created_at,
+-- поэтому глобальная уникальность id и transaction_id обеспечивается узкой таблицей payment_keys
 CREATE TABLE IF NOT EXISTS payments (
-    id UUID PRIMARY KEY,
+    id UUID NOT NULL,
     amount DECIMAL(19,2),
     currency VARCHAR(10),
     description TEXT,
@@ -9,6 +12,169 @@ CREATE TABLE IF NOT EXISTS payments (
     recipient_name VARCHAR(255),
     recipient_account VARCHAR(255),
     transaction_id VARCHAR(255),
-    created_at TIMESTAMP,
-    updated_at TIMESTAMP
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Строки вне существующих секций (например, с очень старой датой) не теряются
+CREATE TABLE IF NOT EXISTS payments_default PARTITION OF payments DEFAULT;
+
+-- Keyset-пагинация последних платежей
+CREATE INDEX IF NOT EXISTS idx_payments_created_at_id ON payments (created_at DESC, id DESC);
+
+-- Keyset-пагинация платежей плательщика и платежей в статусе
+CREATE INDEX IF NOT EXISTS idx_payments_payer_email_created_at ON payments (payer_email, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_payments_status_created_at ON payments (status, created_at DESC, id DESC);
+
+-- Покрывающие индексы поиска (GET /api/payments/search) для частых сочетаний фильтров:
+-- выборка полей из INCLUDE обходится index-only scan без чтения строк таблицы
+CREATE INDEX IF NOT EXISTS idx_payments_search_status_currency
+    ON payments (status, currency, created_at DESC, id DESC) INCLUDE (amount);
+CREATE INDEX IF NOT EXISTS idx_payments_search_currency
+    ON payments (currency, created_at DESC, id DESC) INCLUDE (amount, status);
+CREATE INDEX IF NOT EXISTS idx_payments_search_recipient_account
+    ON payments (recipient_account, created_at DESC, id DESC) INCLUDE (amount, currency, status);
+
+-- Дедупликация и поиск по id: INSERT платежа выполняется только для строк,
+-- вставленных сюда (ON CONFLICT DO NOTHING), created_at указывает секцию
+CREATE TABLE IF NOT EXISTS payment_keys (
+    id UUID PRIMARY KEY,
+    transaction_id VARCHAR(255) NOT NULL UNIQUE,
+    created_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_payment_keys_created_at ON payment_keys (created_at);
+
+-- Создать недостающие дневные секции payments_pYYYYMMDD на [from_day, from_day + days_ahead].
+-- Строки дня, успевшие попасть в payments_default, переносятся в его новую секцию
+CREATE OR REPLACE FUNCTION ensure_payments_partitions(from_day DATE, days_ahead INT) RETURNS INT AS $$
+DECLARE
+    part_day DATE;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    FOR part_day IN SELECT generate_series(from_day, from_day + days_ahead, INTERVAL '1 day')::DATE LOOP
+        partition_name := 'payments_p' || to_char(part_day, 'YYYYMMDD');
+        IF to_regclass(partition_name) IS NULL THEN
+            -- Вставки этого дня в DEFAULT ждут до конца транзакции, иначе новые строки сорвали бы ATTACH
+            LOCK TABLE payments_default IN EXCLUSIVE MODE;
+            IF EXISTS (SELECT 1 FROM payments_default WHERE created_at >= part_day AND created_at < part_day + 1) THEN
+                -- CREATE ... PARTITION OF упал бы на строках дня в DEFAULT: секция создается отдельно,
+                -- строки переносятся в нее, и только потом она присоединяется
+                EXECUTE format('CREATE TABLE %I (LIKE payments INCLUDING DEFAULTS)', partition_name);
+                EXECUTE format('WITH moved AS (DELETE FROM payments_default WHERE created_at >= %L AND created_at < %L '
+                               'RETURNING *) INSERT INTO %I SELECT * FROM moved', part_day, part_day + 1, partition_name);
+                EXECUTE format('ALTER TABLE payments ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                               partition_name, part_day, part_day + 1);
+                RAISE NOTICE 'Moved rows of % from payments_default to %', part_day, partition_name;
+            ELSE
+                EXECUTE format('CREATE TABLE %I PARTITION OF payments FOR VALUES FROM (%L) TO (%L)',
+                               partition_name, part_day, part_day + 1);
+            END IF;
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Отсоединить (detach_only) или удалить секции целиком старше keep_from вместе с их ключами:
+-- дневные payments_pYYYYMMDD и архивную payments_before_YYYYMMDD со всеми строками до этой даты
+CREATE OR REPLACE FUNCTION expire_payments_partitions(keep_from DATE, detach_only BOOLEAN) RETURNS INT AS $$
+DECLARE
+    partition_name TEXT;
+    part_start DATE;
+    part_end DATE;
+    expired INT := 0;
+BEGIN
+    FOR partition_name IN
+        SELECT child.relname FROM pg_inherits
+        JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+        JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+        WHERE parent.relname = 'payments'
+          AND (child.relname ~ '^payments_p[0-9]{8}$' OR child.relname ~ '^payments_before_[0-9]{8}$')
+    LOOP
+        IF partition_name ~ '^payments_before_' THEN
+            part_start := NULL;
+            part_end := to_date(substring(partition_name FROM 17), 'YYYYMMDD');
+        ELSE
+            part_start := to_date(substring(partition_name FROM 11), 'YYYYMMDD');
+            part_end := part_start + 1;
+        END IF;
+        IF part_end <= keep_from THEN
+            IF detach_only THEN
+                EXECUTE format('ALTER TABLE payments DETACH PARTITION %I', partition_name);
+            ELSE
+                EXECUTE format('DROP TABLE %I', partition_name);
+            END IF;
+            DELETE FROM payment_keys
+            WHERE created_at < part_end AND (part_start IS NULL OR created_at >= part_start);
+            expired := expired + 1;
+        END IF;
+    END LOOP;
+    RETURN expired;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT ensure_payments_partitions(CURRENT_DATE - 1, 8);
+
+-- Коды валют (ISO 4217) и статусов для компактной схемы payments; совпадают с CurrencyCode и PaymentStatusCode
+CREATE TABLE IF NOT EXISTS payment_currency_codes (
+    code SMALLINT PRIMARY KEY,
+    name VARCHAR(10) NOT NULL UNIQUE
+);
+INSERT INTO payment_currency_codes (code, name) VALUES
+    (643, 'RUB'), (840, 'USD'), (978, 'EUR'), (826, 'GBP'), (156, 'CNY'), (398, 'KZT'), (933, 'BYN')
+ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS payment_status_codes (
+    code SMALLINT PRIMARY KEY,
+    name VARCHAR(50) NOT NULL UNIQUE
+);
+INSERT INTO payment_status_codes (code, name) VALUES
+    (1, 'PENDING'), (2, 'COMPLETED'), (3, 'FAILED'), (4, 'CANCELLED'), (5, 'REFUNDED')
+ON CONFLICT DO NOTHING;
+
+-- Чтение amount, currency и status одинаково для обычной и компактной схемы:
+-- перегрузка выбирается по типу колонки, для обычной схемы функции подставляются как есть
+CREATE OR REPLACE FUNCTION payment_amount(DECIMAL) RETURNS DECIMAL
+    LANGUAGE sql IMMUTABLE AS 'SELECT $1';
+CREATE OR REPLACE FUNCTION payment_amount(BIGINT) RETURNS DECIMAL
+    LANGUAGE sql IMMUTABLE AS 'SELECT round($1 / 100.0, 2)';
+CREATE OR REPLACE FUNCTION payment_amount_minor(DECIMAL) RETURNS BIGINT
+    LANGUAGE sql IMMUTABLE AS 'SELECT ($1 * 100)::BIGINT';
+CREATE OR REPLACE FUNCTION payment_amount_minor(BIGINT) RETURNS BIGINT
+    LANGUAGE sql IMMUTABLE AS 'SELECT $1';
+CREATE OR REPLACE FUNCTION payment_currency_name(VARCHAR) RETURNS VARCHAR
+    LANGUAGE sql IMMUTABLE AS 'SELECT $1';
+CREATE OR REPLACE FUNCTION payment_currency_name(SMALLINT) RETURNS VARCHAR
+    LANGUAGE sql STABLE AS 'SELECT name FROM payment_currency_codes WHERE code = $1';
+CREATE OR REPLACE FUNCTION payment_status_name(VARCHAR) RETURNS VARCHAR
+    LANGUAGE sql IMMUTABLE AS 'SELECT $1';
+CREATE OR REPLACE FUNCTION payment_status_name(SMALLINT) RETURNS VARCHAR
+    LANGUAGE sql STABLE AS 'SELECT name FROM payment_status_codes WHERE code = $1';
+
+-- Агрегаты по валюте, статусу и минуте created_at (пополняются сервисом, см. PaymentAggregates)
+CREATE TABLE IF NOT EXISTS payment_stats (
+    currency VARCHAR(10) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    payment_count BIGINT NOT NULL,
+    amount_minor BIGINT NOT NULL,
+    PRIMARY KEY (currency, status, bucket_start)
+);
+
+-- Примененные миграции (make migrate-db); схема выше уже соответствует перечисленным
+CREATE TABLE IF NOT EXISTS schema_migrations (
+    version VARCHAR(255) PRIMARY KEY,
+    applied_at TIMESTAMP NOT NULL DEFAULT now()
 );
+INSERT INTO schema_migrations (version) VALUES
+    ('V2__payments_transaction_id_unique.sql'),
+    ('V3__payments_created_at_id_index.sql'),
+    ('V4__payment_stats.sql'),
+    ('V5__payments_partitioned.sql'),
+    ('V6__payments_payer_status_indexes.sql'),
+    ('V7__payments_search_indexes.sql'),
+    ('V8__payment_storage_codes.sql')
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,8 @@
+-- Уникальный индекс по transaction_id для уже существующих БД.
+-- Перед созданием индекса удаляем накопившиеся дубликаты, оставляя самую раннюю запись.
+DELETE FROM payments p
+USING payments d
+WHERE p.transaction_id = d.transaction_id
+  AND (p.created_at, p.id) > (d.created_at, d.id);
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS ux_payments_transaction_id ON payments (transaction_id);
@@ -0,0 +1,2 @@
+-- Индекс для keyset-пагинации по (created_at DESC, id DESC)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_created_at_id ON payments (created_at DESC, id DESC);
@@ -0,0 +1,10 @@
+-- Агрегаты по валюте, статусу и минуте created_at (пополняются сервисом, см. PaymentAggregates).
+-- При первом старте на пустой таблице сервис один раз заполняет ее по payments
+CREATE TABLE IF NOT EXISTS payment_stats (
+    currency VARCHAR(10) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    payment_count BIGINT NOT NULL,
+    amount_minor BIGINT NOT NULL,
+    PRIMARY KEY (currency, status, bucket_start)
+);
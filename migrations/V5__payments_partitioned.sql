@@ -0,0 +1,139 @@
+-- Перевод существующей таблицы payments на секционирование по created_at.
+-- Выполняется при остановленном payment-service: таблица переименовывается,
+-- создается секционированная payments с секциями на весь диапазон данных, и строки переносятся.
+-- payments_legacy остается до проверки, удалить ее вручную: DROP TABLE payments_legacy;
+BEGIN;
+
+ALTER TABLE payments RENAME TO payments_legacy;
+ALTER INDEX IF EXISTS payments_pkey RENAME TO payments_legacy_pkey;
+ALTER INDEX IF EXISTS ux_payments_transaction_id RENAME TO ux_payments_legacy_transaction_id;
+ALTER INDEX IF EXISTS idx_payments_created_at_id RENAME TO idx_payments_legacy_created_at_id;
+
+-- Ключ секционирования не может быть NULL
+UPDATE payments_legacy SET created_at = COALESCE(updated_at, now()) WHERE created_at IS NULL;
+
+CREATE TABLE payments (
+    id UUID NOT NULL,
+    amount DECIMAL(19,2),
+    currency VARCHAR(10),
+    description TEXT,
+    status VARCHAR(50),
+    payer_name VARCHAR(255),
+    payer_email VARCHAR(255),
+    recipient_name VARCHAR(255),
+    recipient_account VARCHAR(255),
+    transaction_id VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE payments_default PARTITION OF payments DEFAULT;
+
+CREATE TABLE IF NOT EXISTS payment_keys (
+    id UUID PRIMARY KEY,
+    transaction_id VARCHAR(255) NOT NULL UNIQUE,
+    created_at TIMESTAMP NOT NULL
+);
+
+-- Создать недостающие дневные секции payments_pYYYYMMDD на [from_day, from_day + days_ahead].
+-- Строки дня, успевшие попасть в payments_default, переносятся в его новую секцию
+CREATE OR REPLACE FUNCTION ensure_payments_partitions(from_day DATE, days_ahead INT) RETURNS INT AS $$
+DECLARE
+    part_day DATE;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    FOR part_day IN SELECT generate_series(from_day, from_day + days_ahead, INTERVAL '1 day')::DATE LOOP
+        partition_name := 'payments_p' || to_char(part_day, 'YYYYMMDD');
+        IF to_regclass(partition_name) IS NULL THEN
+            -- Вставки этого дня в DEFAULT ждут до конца транзакции, иначе новые строки сорвали бы ATTACH
+            LOCK TABLE payments_default IN EXCLUSIVE MODE;
+            IF EXISTS (SELECT 1 FROM payments_default WHERE created_at >= part_day AND created_at < part_day + 1) THEN
+                -- CREATE ... PARTITION OF упал бы на строках дня в DEFAULT: секция создается отдельно,
+                -- строки переносятся в нее, и только потом она присоединяется
+                EXECUTE format('CREATE TABLE %I (LIKE payments INCLUDING DEFAULTS)', partition_name);
+                EXECUTE format('WITH moved AS (DELETE FROM payments_default WHERE created_at >= %L AND created_at < %L '
+                               'RETURNING *) INSERT INTO %I SELECT * FROM moved', part_day, part_day + 1, partition_name);
+                EXECUTE format('ALTER TABLE payments ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                               partition_name, part_day, part_day + 1);
+                RAISE NOTICE 'Moved rows of % from payments_default to %', part_day, partition_name;
+            ELSE
+                EXECUTE format('CREATE TABLE %I PARTITION OF payments FOR VALUES FROM (%L) TO (%L)',
+                               partition_name, part_day, part_day + 1);
+            END IF;
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Отсоединить (detach_only) или удалить секции целиком старше keep_from вместе с их ключами:
+-- дневные payments_pYYYYMMDD и архивную payments_before_YYYYMMDD со всеми строками до этой даты
+CREATE OR REPLACE FUNCTION expire_payments_partitions(keep_from DATE, detach_only BOOLEAN) RETURNS INT AS $$
+DECLARE
+    partition_name TEXT;
+    part_start DATE;
+    part_end DATE;
+    expired INT := 0;
+BEGIN
+    FOR partition_name IN
+        SELECT child.relname FROM pg_inherits
+        JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+        JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+        WHERE parent.relname = 'payments'
+          AND (child.relname ~ '^payments_p[0-9]{8}$' OR child.relname ~ '^payments_before_[0-9]{8}$')
+    LOOP
+        IF partition_name ~ '^payments_before_' THEN
+            part_start := NULL;
+            part_end := to_date(substring(partition_name FROM 17), 'YYYYMMDD');
+        ELSE
+            part_start := to_date(substring(partition_name FROM 11), 'YYYYMMDD');
+            part_end := part_start + 1;
+        END IF;
+        IF part_end <= keep_from THEN
+            IF detach_only THEN
+                EXECUTE format('ALTER TABLE payments DETACH PARTITION %I', partition_name);
+            ELSE
+                EXECUTE format('DROP TABLE %I', partition_name);
+            END IF;
+            DELETE FROM payment_keys
+            WHERE created_at < part_end AND (part_start IS NULL OR created_at >= part_start);
+            expired := expired + 1;
+        END IF;
+    END LOOP;
+    RETURN expired;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Дневные секции - за последние 90 дней (payment.partitions.retention по умолчанию) и на неделю вперед.
+-- Более старая история уходит в одну секцию payments_before_YYYYMMDD: по секции на каждый день
+-- замедлили бы планирование каждого запроса, а при retention 90d обслуживание все равно истечет ее целиком
+DO $$
+DECLARE
+    oldest DATE := (SELECT min(created_at)::DATE FROM payments_legacy);
+    cutoff DATE := CURRENT_DATE - 90;
+    first_day DATE;
+BEGIN
+    IF oldest < cutoff THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF payments FOR VALUES FROM (MINVALUE) TO (%L)',
+                       'payments_before_' || to_char(cutoff, 'YYYYMMDD'), cutoff);
+    END IF;
+    first_day := LEAST(GREATEST(COALESCE(oldest, CURRENT_DATE - 1), cutoff), CURRENT_DATE - 1);
+    PERFORM ensure_payments_partitions(first_day, CURRENT_DATE + 7 - first_day);
+END $$;
+
+INSERT INTO payments SELECT * FROM payments_legacy;
+INSERT INTO payment_keys (id, transaction_id, created_at)
+SELECT id, COALESCE(transaction_id, 'TXN-' || id), created_at FROM payments_legacy
+ON CONFLICT DO NOTHING;
+
+-- Индексы строятся после переноса: так быстрее, чем поддерживать их при вставке
+CREATE INDEX idx_payments_created_at_id ON payments (created_at DESC, id DESC);
+CREATE INDEX idx_payment_keys_created_at ON payment_keys (created_at);
+
+COMMIT;
+
+ANALYZE payments;
+ANALYZE payment_keys;
@@ -0,0 +1,4 @@
+-- Индексы для keyset-пагинации платежей плательщика и платежей в статусе.
+-- На секционированной таблице CONCURRENTLY недоступен: индекс создается на каждой секции
+CREATE INDEX IF NOT EXISTS idx_payments_payer_email_created_at ON payments (payer_email, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_payments_status_created_at ON payments (status, created_at DESC, id DESC);
@@ -0,0 +1,8 @@
+-- Покрывающие индексы поиска (GET /api/payments/search) для частых сочетаний фильтров:
+-- выборка полей из INCLUDE обходится index-only scan без чтения строк таблицы
+CREATE INDEX IF NOT EXISTS idx_payments_search_status_currency
+    ON payments (status, currency, created_at DESC, id DESC) INCLUDE (amount);
+CREATE INDEX IF NOT EXISTS idx_payments_search_currency
+    ON payments (currency, created_at DESC, id DESC) INCLUDE (amount, status);
+CREATE INDEX IF NOT EXISTS idx_payments_search_recipient_account
+    ON payments (recipient_account, created_at DESC, id DESC) INCLUDE (amount, currency, status);
@@ -0,0 +1,35 @@
+-- Коды валют (ISO 4217) и статусов для компактной схемы payments; совпадают с CurrencyCode и PaymentStatusCode
+CREATE TABLE IF NOT EXISTS payment_currency_codes (
+    code SMALLINT PRIMARY KEY,
+    name VARCHAR(10) NOT NULL UNIQUE
+);
+INSERT INTO payment_currency_codes (code, name) VALUES
+    (643, 'RUB'), (840, 'USD'), (978, 'EUR'), (826, 'GBP'), (156, 'CNY'), (398, 'KZT'), (933, 'BYN')
+ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS payment_status_codes (
+    code SMALLINT PRIMARY KEY,
+    name VARCHAR(50) NOT NULL UNIQUE
+);
+INSERT INTO payment_status_codes (code, name) VALUES
+    (1, 'PENDING'), (2, 'COMPLETED'), (3, 'FAILED'), (4, 'CANCELLED'), (5, 'REFUNDED')
+ON CONFLICT DO NOTHING;
+
+-- Чтение amount, currency и status одинаково для обычной и компактной схемы:
+-- перегрузка выбирается по типу колонки, для обычной схемы функции подставляются как есть
+CREATE OR REPLACE FUNCTION payment_amount(DECIMAL) RETURNS DECIMAL
+    LANGUAGE sql IMMUTABLE AS 'SELECT $1';
+CREATE OR REPLACE FUNCTION payment_amount(BIGINT) RETURNS DECIMAL
+    LANGUAGE sql IMMUTABLE AS 'SELECT round($1 / 100.0, 2)';
+CREATE OR REPLACE FUNCTION payment_amount_minor(DECIMAL) RETURNS BIGINT
+    LANGUAGE sql IMMUTABLE AS 'SELECT ($1 * 100)::BIGINT';
+CREATE OR REPLACE FUNCTION payment_amount_minor(BIGINT) RETURNS BIGINT
+    LANGUAGE sql IMMUTABLE AS 'SELECT $1';
+CREATE OR REPLACE FUNCTION payment_currency_name(VARCHAR) RETURNS VARCHAR
+    LANGUAGE sql IMMUTABLE AS 'SELECT $1';
+CREATE OR REPLACE FUNCTION payment_currency_name(SMALLINT) RETURNS VARCHAR
+    LANGUAGE sql STABLE AS 'SELECT name FROM payment_currency_codes WHERE code = $1';
+CREATE OR REPLACE FUNCTION payment_status_name(VARCHAR) RETURNS VARCHAR
+    LANGUAGE sql IMMUTABLE AS 'SELECT $1';
+CREATE OR REPLACE FUNCTION payment_status_name(SMALLINT) RETURNS VARCHAR
+    LANGUAGE sql STABLE AS 'SELECT name FROM payment_status_codes WHERE code = $1';
@@ -0,0 +1,39 @@
+-- Перевод payments на компактную схему: amount - BIGINT в копейках, currency и status - SMALLINT-коды.
+-- Применяется вручную (make migrate-compact) при остановленном payment-service,
+-- после чего сервис запускается с PAYMENT_STORAGE_COMPACT=true.
+-- Перезаписывает все секции и перестраивает индексы с этими колонками.
+-- Неизвестная валюта или статус прерывает миграцию: сначала добавьте код в payment_*_codes и в enum
+BEGIN;
+
+CREATE OR REPLACE FUNCTION payment_currency_code(value VARCHAR) RETURNS SMALLINT AS $$
+DECLARE
+    result SMALLINT;
+BEGIN
+    SELECT code INTO result FROM payment_currency_codes WHERE name = value;
+    IF result IS NULL THEN
+        RAISE EXCEPTION 'Unsupported currency: %', value;
+    END IF;
+    RETURN result;
+END;
+$$ LANGUAGE plpgsql STABLE;
+
+CREATE OR REPLACE FUNCTION payment_status_code(value VARCHAR) RETURNS SMALLINT AS $$
+DECLARE
+    result SMALLINT;
+BEGIN
+    SELECT code INTO result FROM payment_status_codes WHERE name = value;
+    IF result IS NULL THEN
+        RAISE EXCEPTION 'Unsupported payment status: %', value;
+    END IF;
+    RETURN result;
+END;
+$$ LANGUAGE plpgsql STABLE;
+
+ALTER TABLE payments
+    ALTER COLUMN amount TYPE BIGINT USING (amount * 100)::BIGINT,
+    ALTER COLUMN currency TYPE SMALLINT USING payment_currency_code(currency),
+    ALTER COLUMN status TYPE SMALLINT USING payment_status_code(status);
+
+COMMIT;
+
+ANALYZE payments;
@@ -2,12 +2,16 @@ package com.example.mockpayment;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class MockPaymentServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(MockPaymentServiceApplication.class, args);
         System.out.println("Mock Payment Service запущен на порту 8081");
         System.out.println("API: GET http://localhost:8081/api/mock/payment");
+        System.out.println("API: GET http://localhost:8081/api/mock/payments?count=100");
+        System.out.println("API: GET http://localhost:8081/api/mock/payments/stream?count=100 (NDJSON)");
     }
 }
@@ -0,0 +1,67 @@
+package com.example.mockpayment.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки заглушки как симулятора внешнего сервиса
+ */
+@Data
+@ConfigurationProperties(prefix = "mock")
+public class MockProperties {
+
+    // Зерно генератора платежей; null - случайное при каждом запуске
+    private Long seed;
+
+    // Доля платежей, повторяющих transactionId одного из недавних платежей
+    private double duplicateRatio = 0.0;
+
+    // Из скольких последних платежей выбирается повторяемый transactionId
+    private int duplicateWindow = 1000;
+
+    // Максимальное число платежей в одном пакетном ответе
+    private int maxBatchSize = 10000;
+
+    private Latency latency = new Latency();
+    private Errors errors = new Errors();
+
+    public enum LatencyType {
+        FIXED, UNIFORM, LOG_NORMAL
+    }
+
+    @Data
+    public static class Latency {
+        private LatencyType type = LatencyType.FIXED;
+
+        // FIXED
+        private Duration fixed = Duration.ofMillis(200);
+
+        // UNIFORM: [min, max]
+        private Duration min = Duration.ofMillis(50);
+        private Duration max = Duration.ofMillis(300);
+
+        // LOG_NORMAL: медиана и sigma логарифма, хвост ограничен cap
+        private Duration median = Duration.ofMillis(150);
+        private double sigma = 0.5;
+        private Duration cap = Duration.ofSeconds(5);
+
+        // Периодические зависания: каждые stallPeriod сервис stallDuration не отвечает
+        private Duration stallPeriod = Duration.ZERO;
+        private Duration stallDuration = Duration.ZERO;
+
+        // Задержка между строками потокового ответа
+        private Duration streamItemDelay = Duration.ZERO;
+    }
+
+    @Data
+    public static class Errors {
+        // Доля ответов 500
+        private double errorRate = 0.0;
+
+        // Доля запросов, ответ на которые задерживается на timeoutDelay
+        private double timeoutRate = 0.0;
+        private Duration timeoutDelay = Duration.ofSeconds(30);
+    }
+}
@@ -1,58 +1,88 @@
 package com.example.mockpayment.controller;
 
+import com.example.mockpayment.config.MockProperties;
+import com.example.mockpayment.service.LatencyModel;
+import com.example.mockpayment.service.PaymentGenerator;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Random;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/mock")
+@RequiredArgsConstructor
 public class MockController {
-    
-    private static final Random RANDOM = new Random();
-    private static final String[] CURRENCIES = {"RUB", "USD", "EUR", "GBP"};
-    private static final String[] STATUSES = {"PENDING", "COMPLETED", "FAILED"};
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final MockProperties properties;
+    private final LatencyModel latencyModel;
+    private final PaymentGenerator paymentGenerator;
 
     @GetMapping(value = "/payment", produces = MediaType.APPLICATION_JSON_VALUE)
     public Mono<String> getMockPayment() {
-        log.info("Generating mock payment...");
-        
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime createdAt = now.minusMinutes(RANDOM.nextInt(1440));
-
-        String paymentJson = String.format(
-                "{\"id\":\"%s\",\"amount\":%.2f,\"currency\":\"%s\",\"description\":\"Mock payment\"," +
-                        "\"status\":\"%s\",\"payerName\":\"Иван Иванов\",\"payerEmail\":\"ivan@example.com\"," +
-                        "\"recipientName\":\"ООО Ромашка\",\"recipientAccount\":\"ACC%08d\"," +
-                        "\"transactionId\":\"TXN%d-%d\",\"createdAt\":\"%s\",\"updatedAt\":\"%s\"}",
-                UUID.randomUUID().toString(),
-                100 + RANDOM.nextDouble() * 9900,
-                CURRENCIES[RANDOM.nextInt(CURRENCIES.length)],
-                STATUSES[RANDOM.nextInt(STATUSES.length)],
-                RANDOM.nextInt(100000000),
-                System.currentTimeMillis(),
-                System.nanoTime(),
-                createdAt.format(FORMATTER),
-                now.format(FORMATTER)
-        );
-        
-        return Mono.just(paymentJson)
-                .delayElement(Duration.ofMillis(200))
-                .doOnSuccess(p -> log.info("Payment generated"));
+        log.debug("Generating mock payment...");
+        return respond(Mono.fromSupplier(paymentGenerator::nextPayment));
+    }
+
+    /**
+     * count платежей одним JSON-массивом
+     */
+    @GetMapping(value = "/payments", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<String> getMockPayments(@RequestParam(value = "count", defaultValue = "100") int count) {
+        log.debug("Generating {} mock payments...", count);
+        checkCount(count);
+        return respond(Mono.fromSupplier(() -> paymentGenerator.nextPayments(count)));
+    }
+
+    /**
+     * count платежей потоком NDJSON
+     */
+    @GetMapping(value = "/payments/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> streamMockPayments(@RequestParam(value = "count", defaultValue = "100") int count) {
+        log.debug("Streaming {} mock payments...", count);
+        checkCount(count);
+        Flux<String> lines = Flux.range(0, count).map(i -> paymentGenerator.nextPaymentLine());
+        Duration itemDelay = properties.getLatency().getStreamItemDelay();
+        Flux<String> body = itemDelay.isZero() ? lines : lines.delayElements(itemDelay);
+        return respond(Mono.just(body)).flatMapMany(Function.identity());
     }
-    
+
     @GetMapping("/actuator/health")
     public String health() {
         return "{\"status\":\"UP\"}";
     }
+
+    /**
+     * Применить задержку и внедренные ошибки/таймауты к ответу
+     */
+    private <T> Mono<T> respond(Mono<T> payload) {
+        MockProperties.Errors errors = properties.getErrors();
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < errors.getErrorRate()) {
+            return Mono.delay(latencyModel.nextDelay())
+                    .then(Mono.error(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Injected error")));
+        }
+        Duration delay = roll < errors.getErrorRate() + errors.getTimeoutRate()
+                ? errors.getTimeoutDelay()
+                : latencyModel.nextDelay();
+        return delay.isZero() ? payload : Mono.delay(delay).then(payload);
+    }
+
+    private void checkCount(int count) {
+        if (count < 1 || count > properties.getMaxBatchSize()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "count must be between 1 and " + properties.getMaxBatchSize());
+        }
+    }
 }
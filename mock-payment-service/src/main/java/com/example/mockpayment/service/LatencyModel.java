@@ -0,0 +1,50 @@
+package com.example.mockpayment.service;
+
+import com.example.mockpayment.config.MockProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Распределение задержки ответа заглушки
+ */
+@Component
+@RequiredArgsConstructor
+public class LatencyModel {
+
+    private final MockProperties properties;
+
+    public Duration nextDelay() {
+        MockProperties.Latency latency = properties.getLatency();
+        long nanos = switch (latency.getType()) {
+            case FIXED -> latency.getFixed().toNanos();
+            case UNIFORM -> uniform(latency.getMin().toNanos(), latency.getMax().toNanos());
+            case LOG_NORMAL -> logNormal(latency.getMedian().toNanos(), latency.getSigma(), latency.getCap().toNanos());
+        };
+        return Duration.ofNanos(nanos + stallRemainder(latency));
+    }
+
+    private static long uniform(long min, long max) {
+        return max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+    }
+
+    private static long logNormal(long median, double sigma, long cap) {
+        double sample = median * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        return Math.min((long) sample, cap);
+    }
+
+    /**
+     * Если запрос попал в окно зависания - ждем до его конца
+     */
+    private static long stallRemainder(MockProperties.Latency latency) {
+        long period = latency.getStallPeriod().toNanos();
+        long stall = latency.getStallDuration().toNanos();
+        if (period <= 0 || stall <= 0) {
+            return 0;
+        }
+        long phase = Math.floorMod(System.nanoTime(), period);
+        return phase < stall ? stall - phase : 0;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.mockpayment.service;
+
+import com.example.mockpayment.config.MockProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор JSON платежей.
+ * Каждый платеж - детерминированная функция (seed, порядковый номер): без общего Random и блокировок.
+ * JSON собирается в один StringBuilder без String.format и DateTimeFormatter
+ */
+@Slf4j
+@Component
+public class PaymentGenerator {
+
+    private static final String[] CURRENCIES = {"RUB", "USD", "EUR", "GBP"};
+    private static final String[] STATUSES = {"PENDING", "COMPLETED", "FAILED"};
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int PAYMENT_JSON_CAPACITY = 448;
+
+    private final MockProperties properties;
+    private final long seed;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+
+    public PaymentGenerator(MockProperties properties) {
+        this.properties = properties;
+        this.seed = properties.getSeed() != null ? properties.getSeed() : System.nanoTime();
+        log.info("Payment generator seed: {}", seed);
+    }
+
+    public String nextPayment() {
+        StringBuilder json = new StringBuilder(PAYMENT_JSON_CAPACITY);
+        appendPayment(json, sequence.getAndIncrement(), System.currentTimeMillis() / 1000);
+        return json.toString();
+    }
+
+    /**
+     * count платежей JSON-массивом
+     */
+    public String nextPayments(int count) {
+        long first = sequence.getAndAdd(count);
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        StringBuilder json = new StringBuilder(count * PAYMENT_JSON_CAPACITY + 2);
+        json.append('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendPayment(json, first + i, nowSeconds);
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Платеж строкой NDJSON (с переводом строки в конце)
+     */
+    public String nextPaymentLine() {
+        StringBuilder json = new StringBuilder(PAYMENT_JSON_CAPACITY);
+        appendPayment(json, sequence.getAndIncrement(), System.currentTimeMillis() / 1000);
+        return json.append('\n').toString();
+    }
+
+    private void appendPayment(StringBuilder json, long seq, long nowSeconds) {
+        long state = seed + seq * GOLDEN_GAMMA;
+        long r1 = mix(state);
+        long r2 = mix(state + GOLDEN_GAMMA);
+        long r3 = mix(state + 2 * GOLDEN_GAMMA);
+        long r4 = mix(state + 3 * GOLDEN_GAMMA);
+
+        // Версия 4, вариант IETF - как у UUID.randomUUID()
+        UUID id = new UUID((r1 & 0xFFFFFFFFFFFF0FFFL) | 0x4000L, (r2 & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L);
+        long amountCents = 10_000 + Math.floorMod(r3, 990_000L);
+        long createdAt = nowSeconds - 60L * Math.floorMod(r3 >>> 20, 1440L);
+
+        json.append("{\"id\":\"").append(id)
+                .append("\",\"amount\":").append(amountCents / 100).append('.');
+        appendTwoDigits(json, (int) (amountCents % 100));
+        json.append(",\"currency\":\"").append(CURRENCIES[(int) Math.floorMod(r3 >>> 40, (long) CURRENCIES.length)])
+                .append("\",\"description\":\"Mock payment\",\"status\":\"")
+                .append(STATUSES[(int) Math.floorMod(r3 >>> 48, (long) STATUSES.length)])
+                .append("\",\"payerName\":\"Иван Иванов\",\"payerEmail\":\"ivan@example.com\",")
+                .append("\"recipientName\":\"ООО Ромашка\",\"recipientAccount\":\"ACC");
+        appendPadded(json, Math.floorMod(r2 >>> 8, 100_000_000L), 8);
+        json.append("\",\"transactionId\":\"TXN").append(seed).append('-').append(transactionSeq(seq, r4))
+                .append("\",\"createdAt\":\"");
+        appendDateTime(json, createdAt);
+        json.append("\",\"updatedAt\":\"");
+        appendDateTime(json, nowSeconds);
+        json.append("\"}");
+    }
+
+    /**
+     * Номер, от которого строится transactionId: свой или одного из недавних (дубликат)
+     */
+    private long transactionSeq(long seq, long random) {
+        double ratio = properties.getDuplicateRatio();
+        if (ratio <= 0 || seq == 0 || (random >>> 11) * 0x1.0p-53 >= ratio) {
+            return seq;
+        }
+        long window = Math.min(seq, Math.max(1, properties.getDuplicateWindow()));
+        return seq - 1 - Math.floorMod(mix(random), window);
+    }
+
+    private void appendDateTime(StringBuilder json, long epochSeconds) {
+        ZoneOffset offset = zoneRules.getOffset(Instant.ofEpochSecond(epochSeconds));
+        LocalDateTime time = LocalDateTime.ofEpochSecond(epochSeconds, 0, offset);
+        json.append(time.getYear()).append('-');
+        appendTwoDigits(json, time.getMonthValue());
+        json.append('-');
+        appendTwoDigits(json, time.getDayOfMonth());
+        json.append(' ');
+        appendTwoDigits(json, time.getHour());
+        json.append(':');
+        appendTwoDigits(json, time.getMinute());
+        json.append(':');
+        appendTwoDigits(json, time.getSecond());
+    }
+
+    private static void appendTwoDigits(StringBuilder json, int value) {
+        json.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static void appendPadded(StringBuilder json, long value, int width) {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            json.append('0');
+        }
+        json.append(digits);
+    }
+
+    // SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.payment.benchmark;
+
+import com.example.payment.dto.PaymentDto;
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.service.PaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Общие данные для бенчмарков: платеж в формате mock-payment-service
+ */
+final class BenchmarkData {
+
+    static final String PAYMENT_JSON = "{\"id\":\"5f0c6b8e-3a52-4d0e-9c1b-6a1f2d7e8b90\",\"amount\":4821.37," +
+            "\"currency\":\"USD\",\"description\":\"Mock payment\",\"status\":\"COMPLETED\"," +
+            "\"payerName\":\"Иван Иванов\",\"payerEmail\":\"ivan@example.com\"," +
+            "\"recipientName\":\"ООО Ромашка\",\"recipientAccount\":\"ACC04815162\"," +
+            "\"transactionId\":\"TXN42-100500\",\"createdAt\":\"2024-05-17 13:45:12\"," +
+            "\"updatedAt\":\"2024-05-17 14:02:55\"}";
+
+    static final byte[] PAYMENT_JSON_BYTES = PAYMENT_JSON.getBytes(StandardCharsets.UTF_8);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * ObjectMapper с теми же модулями, что и у Spring Boot (JavaTimeModule и т.д.)
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static PaymentDto paymentDto() {
+        return new PaymentDto(
+                UUID.fromString("5f0c6b8e-3a52-4d0e-9c1b-6a1f2d7e8b90"),
+                new BigDecimal("4821.37"),
+                "USD",
+                "Mock payment",
+                "COMPLETED",
+                "Иван Иванов",
+                "ivan@example.com",
+                "ООО Ромашка",
+                "ACC04815162",
+                "TXN42-100500",
+                LocalDateTime.of(2024, 5, 17, 13, 45, 12),
+                LocalDateTime.of(2024, 5, 17, 14, 2, 55));
+    }
+
+    static List<PaymentEntity> paymentEntities(int count) {
+        List<PaymentEntity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PaymentDto dto = paymentDto();
+            dto.setId(UUID.randomUUID());
+            dto.setTransactionId("TXN42-" + i);
+            entities.add(PaymentService.convertToEntity(dto));
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.payment.benchmark;
+
+import com.example.payment.config.CompactStorageConfig;
+import com.example.payment.entity.PaymentEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.r2dbc.convert.MappingR2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг строки компактной схемы (BIGINT amount, SMALLINT currency/status) в PaymentEntity
+ * тем же конвертером, что и у репозиториев при payment.storage.compact=true.
+ * Сравнивать с PaymentRowMappingBenchmark по gc.alloc.rate.norm; декодирование драйвером
+ * (NUMERIC и VARCHAR против INT8 и INT2) здесь не входит, строка - заглушка в памяти.
+ * Выигрыш против PaymentRowMappingBenchmark.readEntity дает ручной конвертер, а не узкие типы:
+ * база для них - PaymentRowMappingBenchmark.readEntityHandWritten, и в самом маппинге они дороже
+ * (BigDecimal из копеек, поиск кода валюты). Узкие типы окупаются шириной строки и декодированием в драйвере
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactRowMappingBenchmark {
+
+    private MappingR2dbcConverter converter;
+    private PaymentRowMappingBenchmark.InMemoryRow row;
+
+    @Setup
+    public void setUp() {
+        R2dbcCustomConversions conversions = R2dbcCustomConversions.of(PostgresDialect.INSTANCE,
+                List.of(new CompactStorageConfig.PaymentReadingConverter(),
+                        new CompactStorageConfig.PaymentWritingConverter()));
+        R2dbcMappingContext mappingContext = new R2dbcMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingR2dbcConverter(mappingContext, conversions);
+
+        Map<String, Object> values = PaymentRowMappingBenchmark.sampleColumns();
+        values.put("amount", 482137L);
+        values.put("currency", (short) 840);
+        values.put("status", (short) 2);
+        row = new PaymentRowMappingBenchmark.InMemoryRow(values);
+    }
+
+    @Benchmark
+    public PaymentEntity readEntity() {
+        return converter.read(PaymentEntity.class, row, row.getMetadata());
+    }
+}
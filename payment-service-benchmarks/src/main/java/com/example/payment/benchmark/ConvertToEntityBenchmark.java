@@ -0,0 +1,51 @@
+package com.example.payment.benchmark;
+
+import com.example.payment.dto.PaymentDto;
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.service.PaymentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PaymentService.convertToEntity: DTO -> Entity на каждый сохраняемый платеж
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvertToEntityBenchmark {
+
+    private PaymentDto complete;
+    private PaymentDto empty;
+
+    @Setup
+    public void setUp() {
+        complete = BenchmarkData.paymentDto();
+        empty = new PaymentDto();
+    }
+
+    @Benchmark
+    public PaymentEntity completeDto() {
+        return PaymentService.convertToEntity(complete);
+    }
+
+    /**
+     * Все поля по умолчанию: UUID.randomUUID(), LocalDateTime.now() и т.д.
+     */
+    @Benchmark
+    public PaymentEntity emptyDto() {
+        return PaymentService.convertToEntity(empty);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.payment.benchmark;
+
+import com.example.payment.dto.PaymentDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Декодирование ответа заглушки: через промежуточную строку и напрямую из байтов.
+ * Варианты via*Decoder повторяют путь WebClient: тело приходит пулом Netty DataBuffer'ов
+ * (целиком или несколькими кусками) и декодируется кодеком через decodeToMono
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentDtoDecodingBenchmark {
+
+    private static final ResolvableType PAYMENT_DTO = ResolvableType.forClass(PaymentDto.class);
+    private static final ResolvableType STRING = ResolvableType.forClass(String.class);
+
+    private ObjectMapper objectMapper;
+    private ObjectReader reader;
+    private NettyDataBufferFactory bufferFactory;
+    private Jackson2JsonDecoder jsonDecoder;
+    private StringDecoder stringDecoder;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BenchmarkData.objectMapper();
+        reader = objectMapper.readerFor(PaymentDto.class);
+        bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        // Как в WebClientConfig: Jackson-декодер на общем ObjectMapper
+        jsonDecoder = new Jackson2JsonDecoder(objectMapper);
+        stringDecoder = StringDecoder.allMimeTypes();
+    }
+
+    /**
+     * Прежний путь: байты -> String -> ObjectMapper.readValue
+     */
+    @Benchmark
+    public PaymentDto viaString() throws IOException {
+        String json = new String(BenchmarkData.PAYMENT_JSON_BYTES, StandardCharsets.UTF_8);
+        return objectMapper.readValue(json, PaymentDto.class);
+    }
+
+    /**
+     * Заранее построенный ObjectReader прямо по байтам
+     */
+    @Benchmark
+    public PaymentDto viaBytes() throws IOException {
+        return reader.readValue(BenchmarkData.PAYMENT_JSON_BYTES);
+    }
+
+    /**
+     * По потоку байтов, как при чтении из DataBuffer.asInputStream()
+     */
+    @Benchmark
+    public PaymentDto viaInputStream() throws IOException {
+        return reader.readValue(new ByteArrayInputStream(BenchmarkData.PAYMENT_JSON_BYTES));
+    }
+
+    /**
+     * Прежний путь WebClient: bodyToMono(String.class), затем ObjectMapper.readValue
+     */
+    @Benchmark
+    public PaymentDto viaStringDecoder() throws IOException {
+        String json = stringDecoder.decodeToMono(body(1), STRING, MediaType.APPLICATION_JSON, Map.of()).block();
+        return objectMapper.readValue(json, PaymentDto.class);
+    }
+
+    /**
+     * Текущий путь WebClient: bodyToMono(PaymentDto.class), тело одним буфером
+     */
+    @Benchmark
+    public PaymentDto viaJsonDecoder() {
+        return (PaymentDto) jsonDecoder.decodeToMono(body(1), PAYMENT_DTO, MediaType.APPLICATION_JSON, Map.of()).block();
+    }
+
+    /**
+     * Тот же путь, тело пришло тремя кусками: декодер сначала склеивает их (DataBufferUtils.join)
+     */
+    @Benchmark
+    public PaymentDto viaJsonDecoderChunked() {
+        return (PaymentDto) jsonDecoder.decodeToMono(body(3), PAYMENT_DTO, MediaType.APPLICATION_JSON, Map.of()).block();
+    }
+
+    /**
+     * Тело ответа в chunks буферах из пула, как их отдает Reactor Netty; декодер освобождает их сам
+     */
+    private Flux<DataBuffer> body(int chunks) {
+        byte[] bytes = BenchmarkData.PAYMENT_JSON_BYTES;
+        int chunkSize = (bytes.length + chunks - 1) / chunks;
+        return Flux.range(0, chunks).map(i -> {
+            int from = i * chunkSize;
+            int length = Math.min(chunkSize, bytes.length - from);
+            return bufferFactory.allocateBuffer(length).write(bytes, from, length);
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.payment.benchmark;
+
+import com.example.payment.entity.PaymentEntity;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация списков PaymentEntity, как в ответах /api/payments и /api/payments/all
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentEntityEncodingBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int size;
+
+    private ObjectWriter writer;
+    private ObjectWriter listWriter;
+    private List<PaymentEntity> payments;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        writer = objectMapper.writerFor(PaymentEntity.class);
+        listWriter = objectMapper.writerFor(new TypeReference<List<PaymentEntity>>() { });
+        payments = BenchmarkData.paymentEntities(size);
+    }
+
+    /**
+     * JSON-массив целиком
+     */
+    @Benchmark
+    public byte[] jsonArray() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(payments);
+    }
+
+    /**
+     * NDJSON: каждый платеж отдельно, как при потоковой выгрузке
+     */
+    @Benchmark
+    public long ndjson() throws JsonProcessingException {
+        long bytes = 0;
+        for (PaymentEntity payment : payments) {
+            bytes += writer.writeValueAsBytes(payment).length + 1;
+        }
+        return bytes;
+    }
+}
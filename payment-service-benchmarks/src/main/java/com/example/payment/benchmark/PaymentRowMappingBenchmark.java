@@ -0,0 +1,201 @@
+package com.example.payment.benchmark;
+
+import com.example.payment.entity.PaymentEntity;
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.R2dbcType;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.r2dbc.convert.MappingR2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг строки R2DBC в PaymentEntity тем же конвертером, что и у репозиториев.
+ * Строка - заглушка в памяти, поэтому измеряется только стоимость маппинга, без драйвера.
+ * readEntityHandWritten - та же обычная строка через ручной конвертер, устроенный как
+ * CompactStorageConfig.PaymentReadingConverter: разница с CompactRowMappingBenchmark показывает вклад
+ * самих узких типов, разница с readEntity - вклад отказа от рефлексивного маппинга
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentRowMappingBenchmark {
+
+    private MappingR2dbcConverter converter;
+    private InMemoryRow row;
+    private final HandWrittenReadingConverter handWritten = new HandWrittenReadingConverter();
+
+    @Setup
+    public void setUp() {
+        R2dbcCustomConversions conversions = R2dbcCustomConversions.of(PostgresDialect.INSTANCE);
+        R2dbcMappingContext mappingContext = new R2dbcMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingR2dbcConverter(mappingContext, conversions);
+
+        row = new InMemoryRow(sampleColumns());
+    }
+
+    @Benchmark
+    public PaymentEntity readEntity() {
+        return converter.read(PaymentEntity.class, row, row.getMetadata());
+    }
+
+    @Benchmark
+    public PaymentEntity readEntityHandWritten() {
+        return handWritten.convert(row);
+    }
+
+    /**
+     * Ручной маппинг обычной схемы (NUMERIC amount, VARCHAR currency/status)
+     */
+    static final class HandWrittenReadingConverter {
+
+        PaymentEntity convert(Row row) {
+            RowMetadata metadata = row.getMetadata();
+            PaymentEntity entity = new PaymentEntity();
+            entity.setId(get(row, metadata, "id", UUID.class));
+            entity.setAmount(get(row, metadata, "amount", BigDecimal.class));
+            entity.setCurrency(get(row, metadata, "currency", String.class));
+            entity.setDescription(get(row, metadata, "description", String.class));
+            entity.setStatus(get(row, metadata, "status", String.class));
+            entity.setPayerName(get(row, metadata, "payer_name", String.class));
+            entity.setPayerEmail(get(row, metadata, "payer_email", String.class));
+            entity.setRecipientName(get(row, metadata, "recipient_name", String.class));
+            entity.setRecipientAccount(get(row, metadata, "recipient_account", String.class));
+            entity.setTransactionId(get(row, metadata, "transaction_id", String.class));
+            entity.setCreatedAt(get(row, metadata, "created_at", LocalDateTime.class));
+            entity.setUpdatedAt(get(row, metadata, "updated_at", LocalDateTime.class));
+            entity.markAsNotNew();
+            return entity;
+        }
+
+        private static <T> T get(Row row, RowMetadata metadata, String column, Class<T> type) {
+            return metadata.contains(column) ? row.get(column, type) : null;
+        }
+    }
+
+    /**
+     * Колонки типичной строки payments в обычной схеме
+     */
+    static Map<String, Object> sampleColumns() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("id", UUID.fromString("5f0c6b8e-3a52-4d0e-9c1b-6a1f2d7e8b90"));
+        values.put("amount", new BigDecimal("4821.37"));
+        values.put("currency", "USD");
+        values.put("description", "Mock payment");
+        values.put("status", "COMPLETED");
+        values.put("payer_name", "Иван Иванов");
+        values.put("payer_email", "ivan@example.com");
+        values.put("recipient_name", "ООО Ромашка");
+        values.put("recipient_account", "ACC04815162");
+        values.put("transaction_id", "TXN42-100500");
+        values.put("created_at", LocalDateTime.of(2024, 5, 17, 13, 45, 12));
+        values.put("updated_at", LocalDateTime.of(2024, 5, 17, 14, 2, 55));
+        return values;
+    }
+
+    /**
+     * Строка с фиксированными значениями колонок
+     */
+    static final class InMemoryRow implements Row, RowMetadata {
+
+        private final List<String> names;
+        private final List<Object> values;
+        private final List<InMemoryColumn> columns;
+
+        InMemoryRow(Map<String, Object> values) {
+            this.names = new ArrayList<>(values.keySet());
+            this.values = new ArrayList<>(values.values());
+            this.columns = new ArrayList<>(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                columns.add(new InMemoryColumn(names.get(i), this.values.get(i).getClass()));
+            }
+        }
+
+        @Override
+        public <T> T get(int index, Class<T> type) {
+            return type.cast(values.get(index));
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> type) {
+            return get(indexOf(name), type);
+        }
+
+        @Override
+        public RowMetadata getMetadata() {
+            return this;
+        }
+
+        @Override
+        public ColumnMetadata getColumnMetadata(int index) {
+            return columns.get(index);
+        }
+
+        @Override
+        public ColumnMetadata getColumnMetadata(String name) {
+            return columns.get(indexOf(name));
+        }
+
+        @Override
+        public List<? extends ColumnMetadata> getColumnMetadatas() {
+            return columns;
+        }
+
+        @Override
+        public boolean contains(String columnName) {
+            return names.contains(columnName);
+        }
+
+        private int indexOf(String name) {
+            int index = names.indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown column: " + name);
+            }
+            return index;
+        }
+    }
+
+    record InMemoryColumn(String name, Class<?> javaType) implements ColumnMetadata {
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Class<?> getJavaType() {
+            return javaType;
+        }
+
+        @Override
+        public Type getType() {
+            return R2dbcType.VARCHAR;
+        }
+    }
+}
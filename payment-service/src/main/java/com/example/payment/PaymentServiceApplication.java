@@ -15,6 +15,7 @@ public class PaymentServiceApplication {
 		log.info("Payment Service started on port 8080!");
 		log.info("Swagger UI: http://localhost:8080/swagger-ui.html");
 		log.info("Fetch and save: POST http://localhost:8080/api/payments/fetch-and-save");
+		log.info("Fetch and save batch: POST http://localhost:8080/api/payments/fetch-and-save/batch?count=100");
 		log.info("Get latest: GET http://localhost:8080/api/payments?limit=10");
 	}
 }
@@ -0,0 +1,101 @@
+package com.example.payment.config;
+
+import com.example.payment.entity.CurrencyCode;
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.entity.PaymentStatusCode;
+import com.example.payment.repository.PaymentStorageFormat;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.r2dbc.core.Parameter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Компактная схема payments (payment.storage.compact=true): amount - BIGINT в копейках,
+ * currency и status - SMALLINT-коды. Конвертеры строки целиком сохраняют PaymentEntity
+ * и внешний API (PaymentDto) без изменений
+ */
+@Configuration
+@ConditionalOnProperty(value = "payment.storage.compact", havingValue = "true")
+public class CompactStorageConfig {
+
+    @Bean
+    public R2dbcCustomConversions r2dbcCustomConversions() {
+        return R2dbcCustomConversions.of(PostgresDialect.INSTANCE,
+                List.of(new PaymentReadingConverter(), new PaymentWritingConverter()));
+    }
+
+    /**
+     * Чтение строки payments; отсутствующие в выборке колонки (проекции поиска) остаются null
+     */
+    @ReadingConverter
+    public static class PaymentReadingConverter implements Converter<Row, PaymentEntity> {
+
+        @Override
+        public PaymentEntity convert(Row row) {
+            RowMetadata metadata = row.getMetadata();
+            PaymentEntity entity = new PaymentEntity();
+            entity.setId(get(row, metadata, "id", UUID.class));
+            Long amount = get(row, metadata, "amount", Long.class);
+            entity.setAmount(amount != null ? BigDecimal.valueOf(amount, PaymentStorageFormat.AMOUNT_SCALE) : null);
+            Short currency = get(row, metadata, "currency", Short.class);
+            entity.setCurrency(currency != null ? CurrencyCode.nameOf(currency) : null);
+            entity.setDescription(get(row, metadata, "description", String.class));
+            Short status = get(row, metadata, "status", Short.class);
+            entity.setStatus(status != null ? PaymentStatusCode.nameOf(status) : null);
+            entity.setPayerName(get(row, metadata, "payer_name", String.class));
+            entity.setPayerEmail(get(row, metadata, "payer_email", String.class));
+            entity.setRecipientName(get(row, metadata, "recipient_name", String.class));
+            entity.setRecipientAccount(get(row, metadata, "recipient_account", String.class));
+            entity.setTransactionId(get(row, metadata, "transaction_id", String.class));
+            entity.setCreatedAt(get(row, metadata, "created_at", LocalDateTime.class));
+            entity.setUpdatedAt(get(row, metadata, "updated_at", LocalDateTime.class));
+            entity.markAsNotNew();
+            return entity;
+        }
+
+        private static <T> T get(Row row, RowMetadata metadata, String column, Class<T> type) {
+            return metadata.contains(column) ? row.get(column, type) : null;
+        }
+    }
+
+    /**
+     * Запись PaymentEntity через save() репозитория
+     */
+    @WritingConverter
+    public static class PaymentWritingConverter implements Converter<PaymentEntity, OutboundRow> {
+
+        @Override
+        public OutboundRow convert(PaymentEntity entity) {
+            OutboundRow row = new OutboundRow();
+            row.put("id", Parameter.fromOrEmpty(entity.getId(), UUID.class));
+            row.put("amount", Parameter.fromOrEmpty(entity.getAmount() != null
+                    ? PaymentStorageFormat.toMinorUnits(entity.getAmount()) : null, Long.class));
+            row.put("currency", Parameter.fromOrEmpty(entity.getCurrency() != null
+                    ? CurrencyCode.codeOf(entity.getCurrency()) : null, Short.class));
+            row.put("description", Parameter.fromOrEmpty(entity.getDescription(), String.class));
+            row.put("status", Parameter.fromOrEmpty(entity.getStatus() != null
+                    ? PaymentStatusCode.codeOf(entity.getStatus()) : null, Short.class));
+            row.put("payer_name", Parameter.fromOrEmpty(entity.getPayerName(), String.class));
+            row.put("payer_email", Parameter.fromOrEmpty(entity.getPayerEmail(), String.class));
+            row.put("recipient_name", Parameter.fromOrEmpty(entity.getRecipientName(), String.class));
+            row.put("recipient_account", Parameter.fromOrEmpty(entity.getRecipientAccount(), String.class));
+            row.put("transaction_id", Parameter.fromOrEmpty(entity.getTransactionId(), String.class));
+            row.put("created_at", Parameter.fromOrEmpty(entity.getCreatedAt(), LocalDateTime.class));
+            row.put("updated_at", Parameter.fromOrEmpty(entity.getUpdatedAt(), LocalDateTime.class));
+            return row;
+        }
+    }
+}
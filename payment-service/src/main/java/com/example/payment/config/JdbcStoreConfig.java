@@ -0,0 +1,40 @@
+package com.example.payment.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+
+/**
+ * Пул JDBC-соединений для JdbcPaymentStore (профиль jdbc).
+ * Учетные данные общие с R2DBC; spring-jdbc не подключен, поэтому DataSource
+ * не конфигурируется автоматически и без профиля не создается
+ */
+@Configuration
+@Profile("jdbc")
+public class JdbcStoreConfig {
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource paymentDataSource(MeterRegistry meterRegistry,
+                                              @Value("${payment.jdbc.url}") String url,
+                                              @Value("${spring.r2dbc.username}") String username,
+                                              @Value("${spring.r2dbc.password}") String password,
+                                              @Value("${payment.jdbc.pool-size:80}") int poolSize,
+                                              @Value("${payment.jdbc.connection-timeout:30s}") Duration connectionTimeout) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("payment-jdbc");
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(poolSize);
+        config.setConnectionTimeout(connectionTimeout.toMillis());
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return new HikariDataSource(config);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.payment.config;
+
+import com.example.payment.dto.IngestionStatusDto;
+import com.example.payment.dto.PayerPaymentsPageDto;
+import com.example.payment.dto.PayerSummaryDto;
+import com.example.payment.dto.PaymentDto;
+import com.example.payment.dto.PaymentPageDto;
+import com.example.payment.dto.PaymentSearchPageDto;
+import com.example.payment.dto.PaymentStatsDto;
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.repository.PaymentRepository;
+import com.example.payment.repository.PaymentStatsRepository;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * Подсказки для native image: типы, которые Jackson (ответы API, заглушка, журнал ingest)
+ * и маппинг строк R2DBC создают и заполняют через рефлексию. На JVM не действуют
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.PaymentRuntimeHints.class)
+public class NativeHintsConfig {
+
+    static class PaymentRuntimeHints implements RuntimeHintsRegistrar {
+
+        private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            bindingHints.registerReflectionHints(hints.reflection(),
+                    PaymentEntity.class,
+                    PaymentDto.class,
+                    PaymentPageDto.class,
+                    PayerPaymentsPageDto.class,
+                    PayerSummaryDto.class,
+                    PaymentSearchPageDto.class,
+                    PaymentStatsDto.class,
+                    IngestionStatusDto.class,
+                    PaymentRepository.CurrencyTotal.class,
+                    PaymentStatsRepository.StatsRow.class);
+        }
+    }
+}
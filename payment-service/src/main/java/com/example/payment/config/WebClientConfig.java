@@ -1,13 +1,18 @@
 package com.example.payment.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
@@ -15,10 +20,46 @@ import java.util.concurrent.TimeUnit;
 @Configuration
 public class WebClientConfig {
 
+    @Value("${mock.client.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${mock.client.pending-acquire-max-count:1000}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${mock.client.pending-acquire-timeout:5s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${mock.client.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${mock.client.max-life-time:10m}")
+    private Duration maxLifeTime;
+
+    @Value("${mock.client.evict-in-background:30s}")
+    private Duration evictInBackground;
+
+    // fifo - равномерно использовать все соединения, lifo - держать "горячими" немногие, остальные отдавать на вытеснение
+    @Value("${mock.client.lease-strategy:fifo}")
+    private String leaseStrategy;
+
     @Bean
-    public WebClient webClient() {
+    public WebClient webClient(ObjectMapper objectMapper) {
+        // Отдельный пул соединений к заглушке с метриками reactor.netty.connection.provider.*
+        ConnectionProvider.Builder providerBuilder = ConnectionProvider.builder("mock-service")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount) // Очередь ожидания соединения, сверх нее - отказ
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInBackground)
+                .metrics(true);
+        ConnectionProvider connectionProvider = "lifo".equalsIgnoreCase(leaseStrategy)
+                ? providerBuilder.lifo().build()
+                : providerBuilder.fifo().build();
+
         // Оптимизированный HttpClient для высокой производительности
-        HttpClient httpClient = HttpClient.create()
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .metrics(true, WebClientConfig::uriTag) // reactor.netty.http.client.*
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 1000) // Таймаут соединения 1 секунда
                 .responseTimeout(Duration.ofMillis(5000)) // Таймаут ответа 5 секунд
                 .doOnConnected(conn ->
@@ -28,8 +69,21 @@ public class WebClientConfig {
                 .compress(true) // Включить сжатие
                 .keepAlive(true); // Поддержать keep-alive соединения
 
+        // Декодеры на общем ObjectMapper: JSON и NDJSON разбираются прямо из DataBuffer
         return WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                })
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Тег uri без query-параметров, чтобы не плодить временные ряды
+     */
+    private static String uriTag(String uri) {
+        int query = uri.indexOf('?');
+        return query < 0 ? uri : uri.substring(0, query);
+    }
+}
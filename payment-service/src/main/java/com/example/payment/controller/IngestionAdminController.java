@@ -0,0 +1,46 @@
+package com.example.payment.controller;
+
+import com.example.payment.dto.IngestionStatusDto;
+import com.example.payment.ingest.IngestionPoller;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/ingestion")
+@RequiredArgsConstructor
+@Tag(name = "Ingestion", description = "Управление фоновой загрузкой платежей")
+public class IngestionAdminController {
+
+    private final IngestionPoller ingestionPoller;
+
+    @Operation(summary = "Запустить фоновую загрузку")
+    @PostMapping(value = "/start", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<IngestionStatusDto> start() {
+        log.info("Received request to start ingestion poller");
+        ingestionPoller.start();
+        return Mono.fromSupplier(ingestionPoller::status);
+    }
+
+    @Operation(summary = "Остановить фоновую загрузку")
+    @PostMapping(value = "/stop", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<IngestionStatusDto> stop() {
+        log.info("Received request to stop ingestion poller");
+        ingestionPoller.stop();
+        return Mono.fromSupplier(ingestionPoller::status);
+    }
+
+    @Operation(summary = "Состояние фоновой загрузки")
+    @GetMapping(value = "/status", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<IngestionStatusDto> status() {
+        return Mono.fromSupplier(ingestionPoller::status);
+    }
+}
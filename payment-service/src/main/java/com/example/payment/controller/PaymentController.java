@@ -1,6 +1,13 @@
 package com.example.payment.controller;
 
+import com.example.payment.dto.PayerPaymentsPageDto;
+import com.example.payment.dto.PaymentPageDto;
+import com.example.payment.dto.PaymentSearchPageDto;
+import com.example.payment.dto.PaymentStatsDto;
 import com.example.payment.entity.PaymentEntity;
+import com.example.payment.ingest.WriteBehindIngestQueue;
+import com.example.payment.repository.PaymentSearchCriteria;
+import com.example.payment.service.PaymentFeed;
 import com.example.payment.service.PaymentService;
 import io.micrometer.core.annotation.Timed;
 import io.swagger.v3.oas.annotations.Operation;
@@ -9,12 +16,24 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/payments")
@@ -23,42 +42,247 @@ import reactor.core.publisher.Mono;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final PaymentFeed paymentFeed;
+
+    @Value("${payment.batch.max-count:10000}")
+    private int maxBatchCount;
+
+    @Value("${payment.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Value("${payment.feed.heartbeat:15s}")
+    private Duration feedHeartbeat;
 
     @Timed(value = "payment.fetch.save.time", description = "Time to fetch and save payment")
     @Operation(summary = "Получить платеж из заглушки и сохранить в БД")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Платеж успешно сохранен"),
+            @ApiResponse(responseCode = "201", description = "Платеж успешно сохранен"),
+            @ApiResponse(responseCode = "204", description = "Платеж не сохранен: дубликат или заглушка не ответила"),
             @ApiResponse(responseCode = "500", description = "Ошибка сервера")
     })
     @PostMapping(value = "/fetch-and-save", produces = MediaType.APPLICATION_JSON_VALUE)
-    @ResponseStatus(HttpStatus.CREATED)
-    public Mono<PaymentEntity> fetchAndSavePayment() {
+    public Mono<ResponseEntity<PaymentEntity>> fetchAndSavePayment() {
         log.debug("Received request to fetch and save payment");
+        // Пустой результат - дубликат или ошибка заглушки (залогирована в сервисе), а не сбой сохранения
         return paymentService.fetchAndSavePayment()
-                .doOnSuccess(payment ->
-                        log.debug("Payment saved with transaction ID: {}", payment.getTransactionId())
-                )
+                .map(payment -> {
+                    log.debug("Payment saved with transaction ID: {}", payment.getTransactionId());
+                    return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+                })
+                .defaultIfEmpty(ResponseEntity.noContent().build())
                 .doOnError(error ->
                         log.error("Error in fetchAndSavePayment", error)
                 );
     }
 
+    @Timed(value = "payment.fetch.enqueue.time", description = "Time to fetch and enqueue payment")
+    @Operation(summary = "Получить платеж из заглушки и поставить в очередь асинхронной записи в БД")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Платеж принят и записан в журнал"),
+            @ApiResponse(responseCode = "204", description = "Платеж не принят: дубликат"),
+            @ApiResponse(responseCode = "502", description = "Заглушка не ответила"),
+            @ApiResponse(responseCode = "503", description = "Очередь записи заполнена"),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера")
+    })
+    @PostMapping(value = "/fetch-and-save/async", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<PaymentEntity>> fetchAndEnqueuePayment() {
+        log.debug("Received request to fetch and enqueue payment");
+        return paymentService.fetchAndEnqueuePayment()
+                .map(payment -> ResponseEntity.status(HttpStatus.ACCEPTED).body(payment))
+                .defaultIfEmpty(ResponseEntity.noContent().build())
+                .onErrorMap(WriteBehindIngestQueue.QueueFullException.class,
+                        error -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, error.getMessage()))
+                .onErrorMap(WebClientException.class,
+                        error -> new ResponseStatusException(HttpStatus.BAD_GATEWAY, error.getMessage(), error))
+                .doOnError(error -> log.error("Error in fetchAndEnqueuePayment", error));
+    }
+
+    @Timed(value = "payment.fetch.save.batch.time", description = "Time to fetch and save a batch of payments")
+    @Operation(summary = "Получить count платежей из заглушки и сохранить в БД пачками")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Платежи успешно сохранены"),
+            @ApiResponse(responseCode = "400", description = "Некорректное значение count"),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера")
+    })
+    @PostMapping(value = "/fetch-and-save/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public Flux<PaymentEntity> fetchAndSavePayments(
+            @RequestParam(value = "count", defaultValue = "100") int count) {
+        log.debug("Received request to fetch and save {} payments", count);
+        if (count < 1 || count > maxBatchCount) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "count must be between 1 and " + maxBatchCount));
+        }
+        return paymentService.fetchAndSavePayments(count)
+                .doOnError(error -> log.error("Error in fetchAndSavePayments", error));
+    }
+
     @Timed(value = "payment.get.latest.time", description = "Time to get latest payments")
     @Operation(summary = "Получить последние платежи из БД")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Список платежей"),
+            @ApiResponse(responseCode = "400", description = "Некорректное значение limit"),
             @ApiResponse(responseCode = "500", description = "Ошибка сервера")
     })
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
     public Flux<PaymentEntity> getLatestPayments(
             @RequestParam(value = "limit", defaultValue = "10") int limit) {
         log.debug("Received request for latest {} payments", limit);
-        return paymentService.getAllPayments()
-                .take(limit)
+        if (limit < 1 || limit > maxPageSize) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + maxPageSize));
+        }
+        return paymentService.getLatestPayments(limit)
                 .doOnComplete(() -> log.debug("Successfully returned latest payments"))
                 .doOnError(error -> log.error("Error getting latest payments", error));
     }
 
+    @Timed(value = "payment.get.page.time", description = "Time to get a page of payments")
+    @Operation(summary = "Получить страницу платежей по курсору (от новых к старым)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница платежей и курсор следующей страницы"),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор или limit"),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера")
+    })
+    @GetMapping(value = "/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<PaymentPageDto> getPaymentsPage(
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        log.debug("Received request for page of {} payments after cursor {}", limit, cursor);
+        if (limit < 1 || limit > maxPageSize) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + maxPageSize));
+        }
+        return paymentService.getPaymentsPage(limit, cursor)
+                .onErrorMap(IllegalArgumentException.class,
+                        error -> new ResponseStatusException(HttpStatus.BAD_REQUEST, error.getMessage()))
+                .doOnError(error -> log.error("Error getting page of payments", error));
+    }
+
+    @Timed(value = "payment.get.payer.time", description = "Time to get a page of payer payments")
+    @Operation(summary = "Получить платежи плательщика по курсору (от новых к старым) и, по запросу, сводку")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница платежей, курсор следующей страницы и сводка"),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор или limit"),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера")
+    })
+    @GetMapping(value = "/payer/{email}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<PayerPaymentsPageDto> getPayerPayments(
+            @PathVariable String email,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "summary", defaultValue = "false") boolean summary) {
+        log.debug("Received request for page of {} payments of payer {} after cursor {}", limit, email, cursor);
+        if (limit < 1 || limit > maxPageSize) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + maxPageSize));
+        }
+        return paymentService.getPayerPaymentsPage(email, limit, cursor, summary)
+                .onErrorMap(IllegalArgumentException.class,
+                        error -> new ResponseStatusException(HttpStatus.BAD_REQUEST, error.getMessage()))
+                .doOnError(error -> log.error("Error getting payments of payer {}", email, error));
+    }
+
+    @Timed(value = "payment.get.status.time", description = "Time to get a page of payments by status")
+    @Operation(summary = "Получить платежи в статусе по курсору (от новых к старым)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница платежей и курсор следующей страницы"),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор или limit"),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера")
+    })
+    @GetMapping(value = "/status/{status}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<PaymentPageDto> getStatusPayments(
+            @PathVariable String status,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        log.debug("Received request for page of {} payments in status {} after cursor {}", limit, status, cursor);
+        if (limit < 1 || limit > maxPageSize) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + maxPageSize));
+        }
+        return paymentService.getStatusPaymentsPage(status, limit, cursor)
+                .onErrorMap(IllegalArgumentException.class,
+                        error -> new ResponseStatusException(HttpStatus.BAD_REQUEST, error.getMessage()))
+                .doOnError(error -> log.error("Error getting payments in status {}", status, error));
+    }
+
+    @Operation(summary = "Поиск платежей по сумме, дате, валюте, статусу и счету получателя (от новых к старым)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница найденных платежей и курсор следующей страницы"),
+            @ApiResponse(responseCode = "400", description = "Некорректные фильтры, поля, курсор или limit"),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера")
+    })
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<PaymentSearchPageDto> searchPayments(
+            @RequestParam(value = "minAmount", required = false) BigDecimal minAmount,
+            @RequestParam(value = "maxAmount", required = false) BigDecimal maxAmount,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "currency", required = false) String currency,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "recipientAccount", required = false) String recipientAccount,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        if (limit < 1 || limit > maxPageSize) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + maxPageSize));
+        }
+        if (minAmount != null && maxAmount != null && minAmount.compareTo(maxAmount) > 0) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "minAmount must not exceed maxAmount"));
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to"));
+        }
+        PaymentSearchCriteria criteria = new PaymentSearchCriteria(
+                minAmount, maxAmount, from, to, currency, status, recipientAccount);
+        log.debug("Received search request {} for {} payments after cursor {}", criteria, limit, cursor);
+        return paymentService.searchPayments(criteria, fields != null ? fields : List.of(), limit, cursor)
+                .onErrorMap(IllegalArgumentException.class,
+                        error -> new ResponseStatusException(HttpStatus.BAD_REQUEST, error.getMessage()))
+                .doOnError(error -> log.error("Error searching payments", error));
+    }
+
+    @Timed(value = "payment.get.stats.time", description = "Time to get payment aggregates")
+    @Operation(summary = "Количество и сумма платежей по валюте, статусу и интервалу времени")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Агрегаты по корзинам"),
+            @ApiResponse(responseCode = "400", description = "Некорректный интервал или bucket"),
+            @ApiResponse(responseCode = "503", description = "Агрегаты еще восстанавливаются после старта")
+    })
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<List<PaymentStatsDto>> getStats(
+            @RequestParam(value = "bucket", defaultValue = "hour") String bucket,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "currency", required = false) String currency,
+            @RequestParam(value = "status", required = false) String status) {
+        ChronoUnit unit = switch (bucket) {
+            case "minute" -> ChronoUnit.MINUTES;
+            case "hour" -> ChronoUnit.HOURS;
+            case "day" -> ChronoUnit.DAYS;
+            default -> null;
+        };
+        if (unit == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "bucket must be one of minute, hour, day"));
+        }
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(1);
+        if (!start.isBefore(end)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to"));
+        }
+        log.debug("Received request for payment stats by {} from {} to {}", bucket, start, end);
+        return paymentService.getStats(start, end, unit, currency, status)
+                .onErrorMap(IllegalStateException.class,
+                        error -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, error.getMessage()))
+                .doOnError(error -> log.error("Error getting payment stats", error));
+    }
+
     @Operation(summary = "Получить все платежи из БД")
     @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
     public Flux<PaymentEntity> getAllPayments() {
@@ -67,11 +291,41 @@ public class PaymentController {
                 .doOnError(error -> log.error("Error getting all payments", error));
     }
 
+    @Operation(summary = "Потоковая выгрузка всех платежей (NDJSON / SSE)")
+    @GetMapping(value = "/all", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<PaymentEntity> streamAllPayments() {
+        log.debug("Received request for streaming export of all payments");
+        return paymentService.getAllPayments()
+                .doOnComplete(() -> log.debug("Streaming export completed"))
+                .doOnError(error -> log.error("Error streaming all payments", error));
+    }
+
+    @Operation(summary = "Живая лента сохраняемых платежей (SSE)",
+            description = "При переподключении с заголовком Last-Event-ID досылаются пропущенные события из окна replay")
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<PaymentEntity>> streamFeed(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.debug("Received live feed subscription, Last-Event-ID: {}", lastEventId);
+        Flux<ServerSentEvent<PaymentEntity>> events = paymentFeed.subscribe(lastEventId)
+                .map(event -> ServerSentEvent.builder(event.payment())
+                        .id(event.id())
+                        .event("payment")
+                        .build());
+        // Комментарий-пульс не дает закрыть простаивающее соединение по server.netty.idle-timeout.
+        // Пульс живет, пока живут события: когда лента обрывает подписчика (overflow=disconnect),
+        // ответ закрывается и клиент переподключается с Last-Event-ID
+        Flux<ServerSentEvent<PaymentEntity>> heartbeats = Flux.interval(feedHeartbeat)
+                .map(tick -> ServerSentEvent.<PaymentEntity>builder().comment("heartbeat").build());
+        return events.publish(shared -> Flux.merge(shared, heartbeats.takeUntilOther(shared.then())));
+    }
+
     @Operation(summary = "Получить платеж по ID")
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public Mono<PaymentEntity> getPaymentById(@PathVariable String id) {
         log.debug("Received request for payment with ID: {}", id);
         return paymentService.getPaymentById(id)
+                .onErrorMap(IllegalArgumentException.class,
+                        error -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid payment ID: " + id))
                 .doOnError(error -> log.error("Error getting payment by ID: {}", id, error));
     }
 }
\ No newline at end of file
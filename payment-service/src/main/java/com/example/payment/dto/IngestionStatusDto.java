@@ -0,0 +1,20 @@
+package com.example.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionStatusDto {
+    private boolean running;
+    private int concurrencyLimit;
+    private int inFlight;
+    private double ratePerSecond;
+    private long completed;
+    private long failed;
+
+    // Минимальное время цикла fetch-and-save, от которого считается рост задержки
+    private Long baselineRttMs;
+}
@@ -0,0 +1,21 @@
+package com.example.payment.dto;
+
+import com.example.payment.entity.PaymentEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayerPaymentsPageDto {
+    private List<PaymentEntity> items;
+
+    // Непрозрачный токен следующей страницы, null - если страниц больше нет
+    private String nextCursor;
+
+    // Заполняется только по запросу (summary=true)
+    private PayerSummaryDto summary;
+}
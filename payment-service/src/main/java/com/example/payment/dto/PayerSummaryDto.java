@@ -0,0 +1,19 @@
+package com.example.payment.dto;
+
+import com.example.payment.entity.PaymentEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayerSummaryDto {
+    private String payerEmail;
+    private long paymentCount;
+    private Map<String, BigDecimal> totalByCurrency;
+    private PaymentEntity lastPayment;
+}
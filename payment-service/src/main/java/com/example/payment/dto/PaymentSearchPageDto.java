@@ -0,0 +1,19 @@
+package com.example.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentSearchPageDto {
+    // Только запрошенные поля платежа (fields), все - если fields не задан
+    private List<Map<String, Object>> items;
+
+    // Непрозрачный токен следующей страницы, null - если страниц больше нет
+    private String nextCursor;
+}
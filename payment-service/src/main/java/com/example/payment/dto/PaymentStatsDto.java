@@ -0,0 +1,19 @@
+package com.example.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentStatsDto {
+    private LocalDateTime bucketStart;
+    private String currency;
+    private String status;
+    private long count;
+    private BigDecimal totalAmount;
+}
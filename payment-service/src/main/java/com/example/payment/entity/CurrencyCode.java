@@ -0,0 +1,57 @@
+package com.example.payment.entity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Коды валют для компактной схемы (payment.storage.compact) - числовые коды ISO 4217.
+ * Должны совпадать с таблицей payment_currency_codes в init-db.sql
+ */
+public enum CurrencyCode {
+    RUB(643),
+    USD(840),
+    EUR(978),
+    GBP(826),
+    CNY(156),
+    KZT(398),
+    BYN(933);
+
+    private static final Map<String, CurrencyCode> BY_NAME = new HashMap<>();
+    private static final Map<Short, CurrencyCode> BY_CODE = new HashMap<>();
+
+    static {
+        for (CurrencyCode currency : values()) {
+            BY_NAME.put(currency.name(), currency);
+            BY_CODE.put(currency.code, currency);
+        }
+    }
+
+    private final short code;
+
+    CurrencyCode(int code) {
+        this.code = (short) code;
+    }
+
+    public short code() {
+        return code;
+    }
+
+    /**
+     * Код по буквенному обозначению; неизвестная валюта - IllegalArgumentException
+     */
+    public static short codeOf(String name) {
+        CurrencyCode currency = BY_NAME.get(name);
+        if (currency == null) {
+            throw new IllegalArgumentException("Unsupported currency: " + name);
+        }
+        return currency.code;
+    }
+
+    public static String nameOf(short code) {
+        CurrencyCode currency = BY_CODE.get(code);
+        if (currency == null) {
+            throw new IllegalArgumentException("Unknown currency code: " + code);
+        }
+        return currency.name();
+    }
+}
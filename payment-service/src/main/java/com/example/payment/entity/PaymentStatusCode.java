@@ -0,0 +1,55 @@
+package com.example.payment.entity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Коды статусов платежа для компактной схемы (payment.storage.compact).
+ * Должны совпадать с таблицей payment_status_codes в init-db.sql
+ */
+public enum PaymentStatusCode {
+    PENDING(1),
+    COMPLETED(2),
+    FAILED(3),
+    CANCELLED(4),
+    REFUNDED(5);
+
+    private static final Map<String, PaymentStatusCode> BY_NAME = new HashMap<>();
+    private static final Map<Short, PaymentStatusCode> BY_CODE = new HashMap<>();
+
+    static {
+        for (PaymentStatusCode status : values()) {
+            BY_NAME.put(status.name(), status);
+            BY_CODE.put(status.code, status);
+        }
+    }
+
+    private final short code;
+
+    PaymentStatusCode(int code) {
+        this.code = (short) code;
+    }
+
+    public short code() {
+        return code;
+    }
+
+    /**
+     * Код по названию статуса; неизвестный статус - IllegalArgumentException
+     */
+    public static short codeOf(String name) {
+        PaymentStatusCode status = BY_NAME.get(name);
+        if (status == null) {
+            throw new IllegalArgumentException("Unsupported payment status: " + name);
+        }
+        return status.code;
+    }
+
+    public static String nameOf(short code) {
+        PaymentStatusCode status = BY_CODE.get(code);
+        if (status == null) {
+            throw new IllegalArgumentException("Unknown payment status code: " + code);
+        }
+        return status.name();
+    }
+}
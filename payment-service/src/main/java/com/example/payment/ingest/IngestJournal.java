@@ -0,0 +1,252 @@
+package com.example.payment.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only журнал на memory-mapped сегментах фиксированного размера.
+ * Запись: [int длина][int crc32][данные], нулевая длина - конец сегмента.
+ * Файл checkpoint хранит позицию, до которой записи уже сохранены в БД;
+ * при старте все записи после нее проигрываются заново, полностью обработанные сегменты удаляются.
+ * append не делает дискового ввода-вывода: следующий сегмент заранее отображает preallocate(),
+ * а сегменты, закрытые при переключении, сбрасывает на диск ближайший force()
+ */
+@Slf4j
+public class IngestJournal implements Closeable {
+
+    private static final int RECORD_HEADER = 8;
+    private static final int CHECKPOINT_SIZE = 12;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Позиция сразу за записью: номер сегмента и смещение в нем
+     */
+    public record Position(long segment, int offset) {
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpoint;
+
+    private volatile MappedByteBuffer segment;
+    private final Queue<MappedByteBuffer> retired = new ConcurrentLinkedQueue<>();
+    private MappedByteBuffer next;
+    private long segmentIndex;
+    private int writeOffset;
+    private long committedSegment;
+
+    public IngestJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        this.checkpointChannel = FileChannel.open(directory.resolve("checkpoint"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_SIZE);
+        this.committedSegment = checkpoint.getLong(0);
+    }
+
+    /**
+     * Есть ли в каталоге сегменты журнала, то есть мог ли остаться несохраненный хвост
+     */
+    public static boolean hasSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .anyMatch(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        }
+    }
+
+    /**
+     * Проиграть записи после checkpoint и подготовить журнал к дозаписи.
+     * Вызывается один раз до первого append
+     */
+    public synchronized int replay(BiConsumer<byte[], Position> consumer) throws IOException {
+        Position from = new Position(checkpoint.getLong(0), checkpoint.getInt(8));
+        List<Long> segments = listSegments();
+        int replayed = 0;
+
+        for (long index : segments) {
+            if (index < from.segment()) {
+                Files.deleteIfExists(segmentPath(index));
+                continue;
+            }
+            MappedByteBuffer buffer = map(index);
+            int offset = index == from.segment() ? from.offset() : 0;
+            while (offset + RECORD_HEADER <= segmentSize) {
+                int length = buffer.getInt(offset);
+                if (length <= 0 || offset + RECORD_HEADER + length > segmentSize) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(offset + RECORD_HEADER, payload);
+                if (crc(payload) != buffer.getInt(offset + 4)) {
+                    log.warn("Torn journal record in segment {} at offset {}, replay stops here", index, offset);
+                    break;
+                }
+                offset += RECORD_HEADER + length;
+                consumer.accept(payload, new Position(index, offset));
+                replayed++;
+            }
+            segment = buffer;
+            segmentIndex = index;
+            writeOffset = offset;
+        }
+
+        if (segment == null) {
+            segmentIndex = Math.max(1, from.segment());
+            segment = map(segmentIndex);
+            writeOffset = from.segment() == segmentIndex ? from.offset() : 0;
+        }
+        // Хвост после последней целой записи (например, оборванной при сбое) затирается
+        if (writeOffset + 4 <= segmentSize) {
+            segment.putInt(writeOffset, 0);
+        }
+        return replayed;
+    }
+
+    /**
+     * Дописать запись; возвращает позицию сразу за ней
+     */
+    public synchronized Position append(byte[] payload) throws IOException {
+        int recordSize = RECORD_HEADER + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + payload.length + " bytes exceeds segment size");
+        }
+        if (writeOffset + recordSize > segmentSize) {
+            roll();
+        }
+        MappedByteBuffer buffer = segment;
+        buffer.put(writeOffset + RECORD_HEADER, payload);
+        buffer.putInt(writeOffset + 4, crc(payload));
+        // Длина пишется последней: запись становится видимой для replay только целиком
+        buffer.putInt(writeOffset, payload.length);
+        writeOffset += recordSize;
+        if (writeOffset + 4 <= segmentSize) {
+            buffer.putInt(writeOffset, 0);
+        }
+        return new Position(segmentIndex, writeOffset);
+    }
+
+    /**
+     * Сбросить записанное на диск (msync), включая сегменты, закрытые после прошлого сброса
+     */
+    public void force() {
+        // Текущий сегмент читается до закрытых: если между ними случится переключение, он окажется в retired
+        MappedByteBuffer current = segment;
+        for (MappedByteBuffer buffer; (buffer = retired.poll()) != null; ) {
+            buffer.force();
+        }
+        current.force();
+    }
+
+    /**
+     * Отобразить следующий сегмент заранее, чтобы переключение в append обошлось без создания файла
+     */
+    public void preallocate() throws IOException {
+        long nextIndex;
+        synchronized (this) {
+            if (next != null) {
+                return;
+            }
+            nextIndex = segmentIndex + 1;
+        }
+        MappedByteBuffer buffer = map(nextIndex);
+        synchronized (this) {
+            if (next == null && segmentIndex + 1 == nextIndex) {
+                next = buffer;
+            }
+        }
+    }
+
+    /**
+     * Отметить, что все записи до position сохранены в БД
+     */
+    public synchronized void commit(Position position) throws IOException {
+        checkpoint.putInt(8, position.offset());
+        checkpoint.putLong(0, position.segment());
+        checkpoint.force();
+
+        while (committedSegment < position.segment()) {
+            if (committedSegment > 0) {
+                Files.deleteIfExists(segmentPath(committedSegment));
+            }
+            committedSegment++;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer buffer; (buffer = retired.poll()) != null; ) {
+            buffer.force();
+        }
+        if (segment != null) {
+            segment.force();
+        }
+        checkpoint.force();
+        checkpointChannel.close();
+    }
+
+    private void roll() throws IOException {
+        // Закрытый сегмент сбросит на диск ближайший force(): ожидающие подтверждения записи ждут именно его
+        retired.add(segment);
+        segmentIndex++;
+        if (next == null) {
+            log.warn("Ingest journal segment {} was not preallocated, mapping it on the write path", segmentIndex);
+            next = map(segmentIndex);
+        }
+        segment = next;
+        next = null;
+        writeOffset = 0;
+        log.debug("Ingest journal rolled to segment {}", segmentIndex);
+    }
+
+    private MappedByteBuffer map(long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Отображение остается валидным и после закрытия канала
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
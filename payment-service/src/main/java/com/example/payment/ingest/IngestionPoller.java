@@ -0,0 +1,253 @@
+package com.example.payment.ingest;
+
+import com.example.payment.dto.IngestionStatusDto;
+import com.example.payment.service.PaymentService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Непрерывная фоновая загрузка платежей из mock.service.url.
+ * Число одновременных запросов подбирается адаптивно (AIMD по задержке):
+ * пока время полного цикла fetch-and-save близко к базовому, лимит растет на 1 за "окно",
+ * при росте задержки выше latencyTolerance * базовая или при ошибке - умножается на backoffRatio.
+ * После ошибки следующие запуски откладываются на failureBackoff, пауза удваивается до maxFailureBackoff
+ * и сбрасывается первым успешным циклом. Серия ошибок пишется в лог один раз, подробности - в DEBUG
+ */
+@Slf4j
+@Component
+public class IngestionPoller {
+
+    // Через сколько замеров базовая задержка пересчитывается заново
+    private static final int BASELINE_RESET_SAMPLES = 5000;
+
+    private final PaymentService paymentService;
+    private final boolean startOnStartup;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final double maxRate;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final long failureBackoff;
+    private final long maxFailureBackoff;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completedTotal = new AtomicLong();
+    private final Counter completedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private volatile double limit;
+    private volatile double ratePerSecond;
+    private long baselineRtt = Long.MAX_VALUE;
+    private long lastDecrease;
+    private int samples;
+    private long nextStart;
+    private long lastRateCompleted;
+    private volatile long currentFailureBackoff;
+    private long consecutiveFailures;
+    private Disposable rateTicker;
+
+    public IngestionPoller(PaymentService paymentService,
+                           MeterRegistry meterRegistry,
+                           @Value("${payment.poller.start-on-startup:false}") boolean startOnStartup,
+                           @Value("${payment.poller.initial-concurrency:8}") int initialConcurrency,
+                           @Value("${payment.poller.min-concurrency:1}") int minConcurrency,
+                           @Value("${payment.poller.max-concurrency:256}") int maxConcurrency,
+                           @Value("${payment.poller.max-rate:0}") double maxRate,
+                           @Value("${payment.poller.latency-tolerance:2.0}") double latencyTolerance,
+                           @Value("${payment.poller.backoff-ratio:0.9}") double backoffRatio,
+                           @Value("${payment.poller.failure-backoff:100ms}") Duration failureBackoff,
+                           @Value("${payment.poller.max-failure-backoff:5s}") Duration maxFailureBackoff) {
+        this.paymentService = paymentService;
+        this.startOnStartup = startOnStartup;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.maxRate = maxRate;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.failureBackoff = failureBackoff.toNanos();
+        this.maxFailureBackoff = Math.max(this.failureBackoff, maxFailureBackoff.toNanos());
+        this.limit = Math.max(minConcurrency, Math.min(maxConcurrency, initialConcurrency));
+
+        Gauge.builder("payment.poller.concurrency.limit", this, poller -> poller.limit)
+                .description("Current adaptive in-flight limit of the ingestion poller")
+                .register(meterRegistry);
+        Gauge.builder("payment.poller.inflight", inFlight, AtomicInteger::get)
+                .description("Requests currently in flight from the ingestion poller")
+                .register(meterRegistry);
+        Gauge.builder("payment.poller.rate", this, poller -> poller.ratePerSecond)
+                .description("Payments per second completed by the ingestion poller")
+                .register(meterRegistry);
+        completedCounter = Counter.builder("payment.poller.completed")
+                .description("Fetch-and-save cycles completed by the ingestion poller")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("payment.poller.failed")
+                .description("Fetch-and-save cycles of the ingestion poller that ended with an error")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnStartup() {
+        if (startOnStartup) {
+            start();
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        lastRateCompleted = completedTotal.get();
+        rateTicker = Flux.interval(Duration.ofSeconds(1)).subscribe(tick -> updateRate());
+        log.info("Ingestion poller started with concurrency limit {}", (int) limit);
+        fill();
+    }
+
+    /**
+     * Остановить запуск новых запросов; уже начатые завершаются сами
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        rateTicker.dispose();
+        ratePerSecond = 0;
+        log.info("Ingestion poller stopped");
+    }
+
+    public IngestionStatusDto status() {
+        long baseline = baselineRtt;
+        return new IngestionStatusDto(
+                running,
+                (int) limit,
+                inFlight.get(),
+                ratePerSecond,
+                completedTotal.get(),
+                (long) failedCounter.count(),
+                baseline == Long.MAX_VALUE ? null : TimeUnit.NANOSECONDS.toMillis(baseline));
+    }
+
+    /**
+     * Запустить запросы до текущего лимита
+     */
+    private void fill() {
+        while (running) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                long delay = Math.max(reserveRateSlot(), currentFailureBackoff);
+                if (delay > 0) {
+                    Mono.delay(Duration.ofNanos(delay)).subscribe(tick -> launch());
+                } else {
+                    launch();
+                }
+            }
+        }
+    }
+
+    private void launch() {
+        long start = System.nanoTime();
+        paymentService.pollPayment()
+                .subscribe(
+                        payment -> { },
+                        error -> {
+                            onFailure(error);
+                            onComplete(System.nanoTime() - start, true);
+                        },
+                        () -> {
+                            onSuccess();
+                            onComplete(System.nanoTime() - start, false);
+                        });
+    }
+
+    private synchronized void onFailure(Throwable error) {
+        currentFailureBackoff = currentFailureBackoff == 0
+                ? failureBackoff
+                : Math.min(maxFailureBackoff, currentFailureBackoff * 2);
+        if (consecutiveFailures++ == 0) {
+            // Стек каждой попытки при лежащей заглушке забил бы лог
+            log.warn("Ingestion poller cycle failed, backing off: {}", error.toString());
+        }
+        log.debug("Ingestion poller cycle failed, next start in {} ms",
+                TimeUnit.NANOSECONDS.toMillis(currentFailureBackoff), error);
+    }
+
+    private synchronized void onSuccess() {
+        if (consecutiveFailures > 0) {
+            log.info("Ingestion poller recovered after {} failed cycles", consecutiveFailures);
+            consecutiveFailures = 0;
+            currentFailureBackoff = 0;
+        }
+    }
+
+    private void onComplete(long rtt, boolean failed) {
+        inFlight.decrementAndGet();
+        completedTotal.incrementAndGet();
+        completedCounter.increment();
+        if (failed) {
+            failedCounter.increment();
+        }
+        adjustLimit(rtt, failed);
+        fill();
+    }
+
+    private synchronized void adjustLimit(long rtt, boolean failed) {
+        // Отказ upstream часто приходит быстрее успешного ответа: в базовую задержку он не идет
+        if (!failed) {
+            if (++samples % BASELINE_RESET_SAMPLES == 0) {
+                baselineRtt = rtt; // Даем базовой задержке подстроиться под изменившийся upstream
+            }
+            baselineRtt = Math.min(baselineRtt, rtt);
+        }
+
+        long now = System.nanoTime();
+        if (failed || rtt > baselineRtt * latencyTolerance) {
+            // Не чаще одного снижения за время ответа, чтобы всплеск медленных ответов не обнулил лимит
+            if (now - lastDecrease > rtt) {
+                limit = Math.max(minConcurrency, limit * backoffRatio);
+                lastDecrease = now;
+            }
+        } else {
+            limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * Ограничение max-rate: возвращает задержку до разрешенного момента старта
+     */
+    private synchronized long reserveRateSlot() {
+        if (maxRate <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextStart);
+        nextStart = slot + (long) (TimeUnit.SECONDS.toNanos(1) / maxRate);
+        return slot - now;
+    }
+
+    private void updateRate() {
+        long completed = completedTotal.get();
+        ratePerSecond = completed - lastRateCompleted;
+        lastRateCompleted = completed;
+    }
+}
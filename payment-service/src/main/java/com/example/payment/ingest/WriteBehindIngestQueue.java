@@ -0,0 +1,484 @@
+package com.example.payment.ingest;
+
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.metrics.PaymentMetrics;
+import com.example.payment.repository.PaymentBatchRepository;
+import com.example.payment.repository.PaymentStore;
+import com.example.payment.service.PaymentReadModels;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.Exceptions;
+import reactor.core.publisher.MonoSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Асинхронная загрузка с отложенной записью (write-behind).
+ * Платеж попадает в журнал и ограниченную очередь, клиенту сразу отвечают 202,
+ * а отдельный поток пишет очередь в БД большими пачками. После перезапуска
+ * несохраненные записи журнала проигрываются в очередь заново.
+ * Строку, которую БД не примет ни при каком повторе, пачка откладывает в dead-letter файл журнала.
+ * Журнал открывается при первом enqueue или при старте, если в каталоге остались сегменты;
+ * проигрывание идет в потоке drainer, и до его конца enqueue отвечает QueueFullException (503)
+ */
+@Slf4j
+@Component
+public class WriteBehindIngestQueue {
+
+    /**
+     * Когда запись журнала считается надежной
+     */
+    public enum Durability {
+        BATCH,      // групповой fsync: ответ после ближайшего общего сброса на диск
+        INTERVAL    // fsync раз в flush-interval, ответ сразу
+    }
+
+    private record QueuedPayment(PaymentEntity entity, IngestJournal.Position position, long enqueuedAt) {
+    }
+
+    private final PaymentStore paymentStore;
+    private final PaymentReadModels paymentReadModels;
+    private final PaymentMetrics paymentMetrics;
+    private final ObjectMapper objectMapper;
+
+    private final BlockingQueue<QueuedPayment> queue;
+    private final Path directory;
+    private final int segmentSize;
+    private final Path deadLetterFile;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Durability durability;
+    private final long flushIntervalNanos;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    private final Object flushMonitor = new Object();
+    private List<MonoSink<Void>> flushWaiters = new ArrayList<>();
+    private volatile IngestJournal journal;
+    private ScheduledExecutorService flusher;
+    private Thread drainer;
+    private volatile boolean ready;
+    private volatile boolean running = true;
+
+    public WriteBehindIngestQueue(PaymentStore paymentStore,
+                                  PaymentReadModels paymentReadModels,
+                                  PaymentMetrics paymentMetrics,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${payment.ingest.async.capacity:100000}") int capacity,
+                                  @Value("${payment.ingest.async.max-batch-size:1000}") int maxBatchSize,
+                                  @Value("${payment.ingest.async.max-wait:100ms}") Duration maxWait,
+                                  @Value("${payment.ingest.async.journal.directory:./data/ingest-journal}") Path directory,
+                                  @Value("${payment.ingest.async.journal.segment-size:64MB}") DataSize segmentSize,
+                                  @Value("${payment.ingest.async.journal.durability:batch}") Durability durability,
+                                  @Value("${payment.ingest.async.journal.flush-interval:100ms}") Duration flushInterval)
+            throws IOException {
+        this.paymentStore = paymentStore;
+        this.paymentReadModels = paymentReadModels;
+        this.paymentMetrics = paymentMetrics;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.deadLetterFile = directory.resolve("dead-letter.jsonl");
+        this.durability = durability;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxBatchSize = Math.min(maxBatchSize, PaymentBatchRepository.MAX_ROWS_PER_STATEMENT);
+        this.maxWaitNanos = maxWait.toNanos();
+
+        Gauge.builder("payment.ingest.async.queue.depth", queue, BlockingQueue::size)
+                .description("Payments accepted by the async ingest queue and not yet written to the DB")
+                .register(meterRegistry);
+
+        // Несохраненный хвост прошлого запуска проигрывается сразу, иначе журнал ждет первого enqueue
+        if (IngestJournal.hasSegments(directory)) {
+            open();
+        }
+    }
+
+    /**
+     * Открыть журнал и запустить drainer; вызывается под appendLock или из конструктора.
+     * Каталог без сегментов проигрывать нечего, и журнал готов сразу
+     */
+    private void open() throws IOException {
+        boolean pending = IngestJournal.hasSegments(directory);
+        IngestJournal opened = new IngestJournal(directory, segmentSize);
+        Runnable drain = this::drainLoop;
+        if (pending) {
+            drain = () -> {
+                if (replay()) {
+                    drainLoop();
+                }
+            };
+        } else {
+            opened.replay((payload, position) -> {
+                throw new IllegalStateException("Unexpected record in a new ingest journal " + directory);
+            });
+            opened.preallocate();
+        }
+        journal = opened;
+        flusher = Executors.newSingleThreadScheduledExecutor(daemon("ingest-journal-flusher"));
+        if (!pending) {
+            startFlusher();
+            ready = true;
+        }
+        drainer = daemon("ingest-drainer").newThread(drain);
+        drainer.start();
+    }
+
+    private void startFlusher() {
+        if (durability == Durability.BATCH) {
+            flusher.execute(this::groupCommitLoop);
+        } else {
+            flusher.scheduleAtFixedRate(this::forceQuietly, flushIntervalNanos, flushIntervalNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Проиграть журнал в очередь в потоке drainer. Хвост больше очереди пишется в БД пачками по ходу;
+     * при недоступной БД это ждет ее, не задерживая старт приложения
+     */
+    private boolean replay() {
+        try {
+            int replayed = journal.replay((payload, position) -> {
+                QueuedPayment queued = new QueuedPayment(readEntity(payload), position, System.nanoTime());
+                while (!queue.offer(queued)) {
+                    if (!drainBacklog()) {
+                        throw new DrainerStoppedException();
+                    }
+                }
+            });
+            journal.preallocate();
+            if (replayed > 0) {
+                log.info("Replayed {} payments from ingest journal {}", replayed, directory);
+            }
+        } catch (DrainerStoppedException e) {
+            return false;
+        } catch (IOException | RuntimeException e) {
+            log.error("Error replaying ingest journal {}, async ingest is unavailable", directory, e);
+            return false;
+        }
+        startFlusher();
+        ready = true;
+        return true;
+    }
+
+    /**
+     * Поставить платеж в очередь; Mono завершается, когда запись надежна согласно durability.
+     * При заполненной очереди - QueueFullException
+     */
+    public Mono<PaymentEntity> enqueue(PaymentEntity entity) {
+        return Mono.fromCallable(() -> append(entity))
+                .flatMap(queued -> durability == Durability.BATCH
+                        ? awaitFlush().thenReturn(entity)
+                        : Mono.just(entity));
+    }
+
+    private QueuedPayment append(PaymentEntity entity) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(entity);
+        // Порядок в журнале и в очереди должен совпадать: checkpoint двигается по очереди
+        appendLock.lock();
+        try {
+            if (journal == null && running) {
+                open();
+            }
+            if (!ready) {
+                // Новые записи не должны обгонять проигрываемые: checkpoint двигается по очереди
+                paymentMetrics.incrementAsyncIngestRejected();
+                throw new QueueFullException("Async ingest journal is being replayed");
+            }
+            if (queue.remainingCapacity() == 0) {
+                paymentMetrics.incrementAsyncIngestRejected();
+                throw new QueueFullException();
+            }
+            QueuedPayment queued = new QueuedPayment(entity, journal.append(payload), System.nanoTime());
+            queue.add(queued);
+            return queued;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private Mono<Void> awaitFlush() {
+        return Mono.create(sink -> {
+            synchronized (flushMonitor) {
+                flushWaiters.add(sink);
+                flushMonitor.notify();
+            }
+        });
+    }
+
+    /**
+     * Групповой fsync: один force() подтверждает все записи, накопившиеся с предыдущего
+     */
+    private void groupCommitLoop() {
+        while (running) {
+            List<MonoSink<Void>> waiters;
+            synchronized (flushMonitor) {
+                while (flushWaiters.isEmpty() && running) {
+                    try {
+                        flushMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                waiters = flushWaiters;
+                flushWaiters = new ArrayList<>();
+            }
+            try {
+                journal.force();
+                waiters.forEach(MonoSink::success);
+            } catch (RuntimeException e) {
+                log.error("Error flushing ingest journal", e);
+                waiters.forEach(waiter -> waiter.error(e));
+            }
+            preallocateQuietly();
+        }
+    }
+
+    private void forceQuietly() {
+        try {
+            journal.force();
+        } catch (RuntimeException e) {
+            log.error("Error flushing ingest journal", e);
+        }
+        preallocateQuietly();
+    }
+
+    private void preallocateQuietly() {
+        try {
+            journal.preallocate();
+        } catch (IOException | RuntimeException e) {
+            log.error("Error preallocating ingest journal segment", e);
+        }
+    }
+
+    private void drainLoop() {
+        List<QueuedPayment> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedPayment first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) == 0) {
+                        long remaining = deadline - System.nanoTime();
+                        QueuedPayment next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                if (!writeBatch(batch)) {
+                    return; // Остановка при недоступной БД: записи остаются в журнале
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Записать пачку и сдвинуть checkpoint журнала
+     */
+    private boolean writeBatch(List<QueuedPayment> batch) throws InterruptedException {
+        if (!persist(batch)) {
+            return false;
+        }
+        try {
+            journal.commit(batch.get(batch.size() - 1).position());
+        } catch (IOException e) {
+            // Checkpoint уже записан, не удалось только убрать обработанные сегменты
+            log.warn("Error removing processed ingest journal segments", e);
+        }
+        return true;
+    }
+
+    /**
+     * Вставить строки, повторяя при временных ошибках БД. Постоянную ошибку пачка делит пополам,
+     * пока не найдет виноватую строку; ее кладет в dead-letter, остальные сохраняются
+     */
+    private boolean persist(List<QueuedPayment> rows) throws InterruptedException {
+        List<PaymentEntity> entities = new ArrayList<>(rows.size());
+        rows.forEach(queued -> entities.add(queued.entity()));
+
+        long backoff = 100;
+        while (true) {
+            try {
+                List<UUID> inserted = paymentStore.insertAll(entities).collectList().block();
+                Set<UUID> insertedIds = new HashSet<>(inserted);
+                int conflicts = entities.size() - insertedIds.size();
+                if (conflicts > 0) {
+                    paymentMetrics.incrementDedupDbConflicts(conflicts);
+                }
+                long now = System.nanoTime();
+                for (QueuedPayment queued : rows) {
+                    paymentMetrics.recordAsyncDrainLag(now - queued.enqueuedAt());
+                    if (insertedIds.contains(queued.entity().getId())) {
+                        paymentReadModels.onInserted(queued.entity());
+                        paymentMetrics.incrementPaymentSaves();
+                    }
+                }
+                return true;
+            } catch (RuntimeException e) {
+                if (isPermanent(e)) {
+                    if (rows.size() == 1) {
+                        deadLetter(rows.get(0), e);
+                        return true;
+                    }
+                    int half = rows.size() / 2;
+                    log.warn("Batch of {} payments rejected by the DB, splitting to isolate the bad row: {}",
+                            rows.size(), e.getMessage());
+                    return persist(rows.subList(0, half)) && persist(rows.subList(half, rows.size()));
+                }
+                if (!running) {
+                    log.error("Ingest drainer stopped with {} payments pending; they will be replayed on restart",
+                            rows.size() + queue.size(), e);
+                    return false;
+                }
+                log.error("Error writing batch of {} payments, retrying in {} ms", rows.size(), backoff, e);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, 5000);
+            }
+        }
+    }
+
+    /**
+     * Ошибка самих данных, а не БД: повтор той же строки упадет так же.
+     * Сюда относятся отказ конвертера (например, неизвестная валюта при компактном хранении)
+     * и нарушения ограничений/формата данных (SQLSTATE классов 22 и 23)
+     */
+    private static boolean isPermanent(Throwable error) {
+        for (Throwable cause = Exceptions.unwrap(error); cause != null; cause = cause.getCause()) {
+            if (cause instanceof IllegalArgumentException || cause instanceof DataIntegrityViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && (sqlException.getSQLState().startsWith("22") || sqlException.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void deadLetter(QueuedPayment queued, Throwable error) {
+        PaymentEntity entity = queued.entity();
+        log.error("Payment {} (transaction {}) rejected by the DB, moved to {}: {}",
+                entity.getId(), entity.getTransactionId(), deadLetterFile, error.getMessage());
+        paymentMetrics.incrementAsyncIngestDeadLetters();
+        try {
+            byte[] line = objectMapper.writeValueAsBytes(entity);
+            Files.write(deadLetterFile, appendNewline(line), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Error writing payment {} to dead-letter file", entity.getId(), e);
+        }
+    }
+
+    private static byte[] appendNewline(byte[] payload) {
+        byte[] line = Arrays.copyOf(payload, payload.length + 1);
+        line[payload.length] = '\n';
+        return line;
+    }
+
+    /**
+     * Записать в БД голову очереди, пока проигрыванию журнала не хватает места.
+     * false - drainer остановлен, недописанное останется в журнале
+     */
+    private boolean drainBacklog() {
+        List<QueuedPayment> batch = new ArrayList<>(maxBatchSize);
+        queue.drainTo(batch, maxBatchSize);
+        try {
+            return writeBatch(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private PaymentEntity readEntity(byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, PaymentEntity.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted ingest journal record", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        appendLock.lock();
+        try {
+            running = false;
+        } finally {
+            appendLock.unlock();
+        }
+        if (journal == null) {
+            return;
+        }
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+        drainer.join(TimeUnit.SECONDS.toMillis(30));
+        flusher.shutdown();
+        journal.close();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Очередь заполнена: клиенту отвечают 503
+     */
+    public static class QueueFullException extends RuntimeException {
+        public QueueFullException() {
+            this("Async ingest queue is full");
+        }
+
+        public QueueFullException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Остановка приложения во время проигрывания журнала
+     */
+    private static class DrainerStoppedException extends RuntimeException {
+    }
+}
@@ -1,18 +1,56 @@
 package com.example.payment.metrics;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @RequiredArgsConstructor
 public class PaymentMetrics {
 
+    /**
+     * Этапы конвейера загрузки платежа
+     */
+    public enum Stage {
+        FETCH,          // HTTP-запрос к заглушке вместе с декодированием ответа
+        FETCH_STREAM,   // NDJSON-запрос порции платежей целиком
+        DEDUP,          // проверка по фильтру transactionId в памяти
+        ACQUIRE,        // ожидание соединения из пула R2DBC
+        INSERT,         // выполнение INSERT на полученном соединении
+        TOTAL           // fetchAndSavePayment целиком
+    }
+
+    private static final Duration[] STAGE_SLOS = {
+            Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25),
+            Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500),
+            Duration.ofSeconds(1), Duration.ofSeconds(2), Duration.ofSeconds(5)
+    };
+
     private final MeterRegistry meterRegistry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
     private Counter mockPaymentRequestCounter;
     private Counter paymentSaveCounter;
+    private Counter dedupFilterHitCounter;
+    private Counter dedupDbConflictCounter;
+    private Counter asyncIngestRejectedCounter;
+    private Counter asyncIngestDeadLetterCounter;
+    private Timer asyncDrainLagTimer;
+    // Фильтров поиска пять (PaymentSearchCriteria.shape), форм не больше 2^5 = 32, поэтому число таймеров ограничено
+    private final Map<String, Timer> searchTimers = new ConcurrentHashMap<>();
 
     @PostConstruct
     public void init() {
@@ -23,6 +61,37 @@ public class PaymentMetrics {
         paymentSaveCounter = Counter.builder("payment.saves.total")
                 .description("Total number of payments saved to database")
                 .register(meterRegistry);
+
+        dedupFilterHitCounter = Counter.builder("payment.dedup.filter.hits")
+                .description("Duplicate payments rejected by the in-memory filter without a DB round trip")
+                .register(meterRegistry);
+
+        dedupDbConflictCounter = Counter.builder("payment.dedup.db.conflicts")
+                .description("Duplicate payments that passed the in-memory filter and were rejected by the unique index")
+                .register(meterRegistry);
+
+        asyncIngestRejectedCounter = Counter.builder("payment.ingest.async.rejected")
+                .description("Payments rejected because the async ingest queue was full")
+                .register(meterRegistry);
+
+        asyncIngestDeadLetterCounter = Counter.builder("payment.ingest.async.dead.letters")
+                .description("Async ingest payments the DB rejected permanently and moved to the dead-letter file")
+                .register(meterRegistry);
+
+        asyncDrainLagTimer = Timer.builder("payment.ingest.async.drain.lag")
+                .description("Time from accepting a payment into the async queue until it is written to the DB")
+                .publishPercentileHistogram()
+                .serviceLevelObjectives(STAGE_SLOS)
+                .register(meterRegistry);
+
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("payment.ingest.stage")
+                    .description("Latency of a payment ingest pipeline stage")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .serviceLevelObjectives(STAGE_SLOS)
+                    .register(meterRegistry));
+        }
     }
 
     public void incrementMockPaymentRequests() {
@@ -32,4 +101,76 @@ public class PaymentMetrics {
     public void incrementPaymentSaves() {
         paymentSaveCounter.increment();
     }
+
+    public void incrementDedupFilterHits() {
+        dedupFilterHitCounter.increment();
+    }
+
+    public void incrementDedupDbConflicts(int count) {
+        dedupDbConflictCounter.increment(count);
+    }
+
+    /**
+     * Метрики кэша: попадания/промахи, вытеснения, время загрузки, размер
+     */
+    public void bindCache(AsyncCache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    public void incrementAsyncIngestRejected() {
+        asyncIngestRejectedCounter.increment();
+    }
+
+    public void incrementAsyncIngestDeadLetters() {
+        asyncIngestDeadLetterCounter.increment();
+    }
+
+    public void recordAsyncDrainLag(long nanos) {
+        asyncDrainLagTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Замерить этап от подписки до завершения (успешного или с ошибкой)
+     */
+    public <T> Mono<T> timeStage(Stage stage, Mono<T> source) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return source.doOnTerminate(() -> recordStage(stage, System.nanoTime() - start));
+        });
+    }
+
+    public <T> Flux<T> timeStage(Stage stage, Flux<T> source) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return source.doOnTerminate(() -> recordStage(stage, System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Ошибки обращения к заглушке, с тегом по типу исключения
+     */
+    public void incrementUpstreamErrors(Throwable error) {
+        meterRegistry.counter("payment.upstream.errors", "exception", error.getClass().getSimpleName())
+                .increment();
+    }
+
+    /**
+     * Замерить поисковый запрос с тегом формы фильтра (например, "currency+date+status")
+     */
+    public <T> Mono<T> timeSearch(String shape, Mono<T> source) {
+        Timer timer = searchTimers.computeIfAbsent(shape, key -> Timer.builder("payment.search.time")
+                .description("Latency of a payment search query by filter shape")
+                .tag("shape", key)
+                .publishPercentileHistogram()
+                .serviceLevelObjectives(STAGE_SLOS)
+                .register(meterRegistry));
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return source.doOnTerminate(() -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
 }
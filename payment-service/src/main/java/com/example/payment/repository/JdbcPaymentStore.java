@@ -0,0 +1,197 @@
+package com.example.payment.repository;
+
+import com.example.payment.entity.CurrencyCode;
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.entity.PaymentStatusCode;
+import com.example.payment.metrics.PaymentMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+/**
+ * PaymentStore поверх JDBC (профиль jdbc). Каждый вызов выполняется блокирующе в отдельном
+ * виртуальном потоке: ожидание соединения из пула и ответа БД не занимает ни event loop, ни платформенный поток.
+ * Пачка вставляется JDBC-батчем по строке на оператор в одной транзакции;
+ * дубликаты, как и в R2DBC-варианте, отсекает payment_keys
+ */
+@Repository
+@Profile("jdbc")
+public class JdbcPaymentStore implements PaymentStore {
+
+    private static final String INSERT_ROW = PaymentBatchRepository.INSERT_PREFIX +
+            "(" + "?,".repeat(PaymentBatchRepository.COLUMNS - 1) + "?" + PaymentBatchRepository.INSERT_SUFFIX;
+    private static final String SELECT = "SELECT " + PaymentBatchRepository.COLUMN_LIST + " FROM payments ";
+    private static final String FIND_LATEST = SELECT + "ORDER BY created_at DESC, id DESC LIMIT ?";
+    private static final String FIND_LATEST_BEFORE = SELECT + "WHERE created_at <= ? AND (created_at, id) < (?, ?) " +
+            "ORDER BY created_at DESC, id DESC LIMIT ?";
+    private static final String FIND_BY_ID = SELECT + "WHERE id = ? " +
+            "AND created_at = (SELECT created_at FROM payment_keys WHERE id = ?)";
+
+    private final DataSource dataSource;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentStorageFormat storageFormat;
+    private final Scheduler scheduler;
+
+    public JdbcPaymentStore(DataSource dataSource, PaymentMetrics paymentMetrics, PaymentStorageFormat storageFormat) {
+        this.dataSource = dataSource;
+        this.paymentMetrics = paymentMetrics;
+        this.storageFormat = storageFormat;
+        this.scheduler = Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "jdbc-store");
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.dispose();
+    }
+
+    @Override
+    public Flux<UUID> insertAll(List<PaymentEntity> entities) {
+        if (entities.isEmpty()) {
+            return Flux.empty();
+        }
+        return Mono.fromCallable(() -> insertBatch(entities, false))
+                .subscribeOn(scheduler)
+                .flatMapIterable(ids -> ids);
+    }
+
+    @Override
+    public Mono<Void> warmUpInsert(List<PaymentEntity> entities) {
+        return Mono.fromCallable(() -> insertBatch(entities, true))
+                .subscribeOn(scheduler)
+                .then();
+    }
+
+    @Override
+    public Flux<PaymentEntity> findLatestPayments(int limit) {
+        return query(FIND_LATEST, limit);
+    }
+
+    @Override
+    public Flux<PaymentEntity> findLatestPaymentsBefore(LocalDateTime createdAt, UUID id, int limit) {
+        return query(FIND_LATEST_BEFORE, createdAt, createdAt, id, limit);
+    }
+
+    @Override
+    public Mono<PaymentEntity> findPaymentById(UUID id) {
+        return query(FIND_BY_ID, id, id).next();
+    }
+
+    /**
+     * warmUp - прогрев: транзакция откатывается, стадии ACQUIRE/INSERT не замеряются
+     */
+    private List<UUID> insertBatch(List<PaymentEntity> entities, boolean warmUp) throws SQLException {
+        long acquireStart = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            long insertStart = System.nanoTime();
+            if (!warmUp) {
+                paymentMetrics.recordStage(PaymentMetrics.Stage.ACQUIRE, insertStart - acquireStart);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_ROW)) {
+                connection.setAutoCommit(false);
+                for (PaymentEntity entity : entities) {
+                    int index = 1;
+                    statement.setObject(index++, entity.getId());
+                    statement.setObject(index++, storageFormat.amount(entity.getAmount()));
+                    statement.setObject(index++, storageFormat.currency(entity.getCurrency()));
+                    statement.setString(index++, entity.getDescription());
+                    statement.setObject(index++, storageFormat.status(entity.getStatus()));
+                    statement.setString(index++, entity.getPayerName());
+                    statement.setString(index++, entity.getPayerEmail());
+                    statement.setString(index++, entity.getRecipientName());
+                    statement.setString(index++, entity.getRecipientAccount());
+                    statement.setString(index++, entity.getTransactionId());
+                    statement.setObject(index++, entity.getCreatedAt());
+                    statement.setObject(index, entity.getUpdatedAt());
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                if (warmUp) {
+                    connection.rollback();
+                } else {
+                    connection.commit();
+                }
+
+                List<UUID> inserted = new ArrayList<>(entities.size());
+                for (int i = 0; i < counts.length; i++) {
+                    // SUCCESS_NO_INFO драйвер возвращает, только если не знает числа строк; считаем вставленной
+                    if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                        inserted.add(entities.get(i).getId());
+                    }
+                }
+                return inserted;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+                if (!warmUp) {
+                    paymentMetrics.recordStage(PaymentMetrics.Stage.INSERT, System.nanoTime() - insertStart);
+                }
+            }
+        }
+    }
+
+    private Flux<PaymentEntity> query(String sql, Object... parameters) {
+        return Mono.fromCallable(() -> {
+                    try (Connection connection = dataSource.getConnection();
+                         PreparedStatement statement = connection.prepareStatement(sql)) {
+                        for (int i = 0; i < parameters.length; i++) {
+                            statement.setObject(i + 1, parameters[i]);
+                        }
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            List<PaymentEntity> payments = new ArrayList<>();
+                            while (resultSet.next()) {
+                                payments.add(mapRow(resultSet));
+                            }
+                            return payments;
+                        }
+                    }
+                })
+                .subscribeOn(scheduler)
+                .flatMapIterable(payments -> payments);
+    }
+
+    private PaymentEntity mapRow(ResultSet resultSet) throws SQLException {
+        PaymentEntity entity = new PaymentEntity();
+        entity.setId(resultSet.getObject("id", UUID.class));
+        if (storageFormat.isCompact()) {
+            long amount = resultSet.getLong("amount");
+            entity.setAmount(resultSet.wasNull() ? null : BigDecimal.valueOf(amount, PaymentStorageFormat.AMOUNT_SCALE));
+            short currency = resultSet.getShort("currency");
+            entity.setCurrency(resultSet.wasNull() ? null : CurrencyCode.nameOf(currency));
+            short status = resultSet.getShort("status");
+            entity.setStatus(resultSet.wasNull() ? null : PaymentStatusCode.nameOf(status));
+        } else {
+            entity.setAmount(resultSet.getBigDecimal("amount"));
+            entity.setCurrency(resultSet.getString("currency"));
+            entity.setStatus(resultSet.getString("status"));
+        }
+        entity.setDescription(resultSet.getString("description"));
+        entity.setPayerName(resultSet.getString("payer_name"));
+        entity.setPayerEmail(resultSet.getString("payer_email"));
+        entity.setRecipientName(resultSet.getString("recipient_name"));
+        entity.setRecipientAccount(resultSet.getString("recipient_account"));
+        entity.setTransactionId(resultSet.getString("transaction_id"));
+        entity.setCreatedAt(resultSet.getObject("created_at", LocalDateTime.class));
+        entity.setUpdatedAt(resultSet.getObject("updated_at", LocalDateTime.class));
+        entity.markAsNotNew();
+        return entity;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.payment.repository;
+
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.metrics.PaymentMetrics;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Пакетные операции над таблицей payments через DatabaseClient.
+ * Один multi-row INSERT на пачку вместо save() на каждую строку,
+ * дубликаты по id и transaction_id отсекают уникальные ключи payment_keys.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentBatchRepository {
+
+    static final String COLUMN_LIST = "id, amount, currency, description, status, payer_name, payer_email, " +
+            "recipient_name, recipient_account, transaction_id, created_at, updated_at";
+    static final String INSERT_PREFIX = "WITH input (" + COLUMN_LIST + ") AS (VALUES ";
+    // Строка попадает в payments, только если ее ключ вставлен в payment_keys:
+    // уникальность id и transaction_id проверяется там, а не в секциях payments
+    static final String INSERT_SUFFIX = "), new_keys AS (" +
+            "INSERT INTO payment_keys (id, transaction_id, created_at) " +
+            "SELECT id, transaction_id, created_at FROM input ON CONFLICT DO NOTHING RETURNING id) " +
+            "INSERT INTO payments (" + COLUMN_LIST + ") " +
+            "SELECT " + COLUMN_LIST + " FROM input JOIN new_keys USING (id)";
+    private static final String RETURNING = " RETURNING id";
+    static final int COLUMNS = 12;
+
+    // PostgreSQL ограничивает число параметров в запросе значением 65535
+    public static final int MAX_ROWS_PER_STATEMENT = 65535 / COLUMNS;
+
+    private final DatabaseClient databaseClient;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentStorageFormat storageFormat;
+
+    /**
+     * Вставить пачку платежей одним запросом.
+     * Возвращает id реально вставленных строк, дубликаты пропускаются.
+     * Соединение берется явно, чтобы отдельно замерить ожидание пула и сам INSERT
+     */
+    public Flux<UUID> insertAll(List<PaymentEntity> entities) {
+        return insertAll(entities, true);
+    }
+
+    /**
+     * То же без замеров стадий ACQUIRE/INSERT - для прогрева, чтобы он не искажал метрики
+     */
+    public Flux<UUID> insertAllUnmetered(List<PaymentEntity> entities) {
+        return insertAll(entities, false);
+    }
+
+    private Flux<UUID> insertAll(List<PaymentEntity> entities, boolean metered) {
+        if (entities.isEmpty()) {
+            return Flux.empty();
+        }
+        if (entities.size() > MAX_ROWS_PER_STATEMENT) {
+            return Flux.error(new IllegalArgumentException(
+                    "Batch size " + entities.size() + " exceeds " + MAX_ROWS_PER_STATEMENT));
+        }
+
+        String sql = buildInsertSql(entities.size());
+        return Flux.defer(() -> {
+            long acquireStart = System.nanoTime();
+            return databaseClient.inConnectionMany(connection -> {
+                long insertStart = System.nanoTime();
+                if (metered) {
+                    paymentMetrics.recordStage(PaymentMetrics.Stage.ACQUIRE, insertStart - acquireStart);
+                }
+
+                Statement statement = connection.createStatement(sql);
+                int index = 0;
+                for (PaymentEntity entity : entities) {
+                    statement.bind(index++, entity.getId())
+                            .bind(index++, storageFormat.amount(entity.getAmount()))
+                            .bind(index++, storageFormat.currency(entity.getCurrency()))
+                            .bind(index++, entity.getDescription())
+                            .bind(index++, storageFormat.status(entity.getStatus()))
+                            .bind(index++, entity.getPayerName())
+                            .bind(index++, entity.getPayerEmail())
+                            .bind(index++, entity.getRecipientName())
+                            .bind(index++, entity.getRecipientAccount())
+                            .bind(index++, entity.getTransactionId())
+                            .bind(index++, entity.getCreatedAt())
+                            .bind(index++, entity.getUpdatedAt());
+                }
+                return Flux.from(statement.execute())
+                        .flatMap(result -> result.map((row, metadata) -> row.get("id", UUID.class)))
+                        .doOnTerminate(() -> {
+                            if (metered) {
+                                paymentMetrics.recordStage(PaymentMetrics.Stage.INSERT, System.nanoTime() - insertStart);
+                            }
+                        });
+            });
+        });
+    }
+
+    private static String buildInsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + INSERT_SUFFIX.length() + RETURNING.length() + rows * COLUMNS * 6);
+        sql.append(INSERT_PREFIX);
+        int param = 1;
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sql.append(',');
+            }
+            sql.append('(');
+            for (int column = 0; column < COLUMNS; column++) {
+                if (column > 0) {
+                    sql.append(',');
+                }
+                sql.append('$').append(param++);
+            }
+            sql.append(')');
+        }
+        sql.append(INSERT_SUFFIX).append(RETURNING);
+        return sql.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.payment.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Управление дневными секциями payments через функции из init-db.sql
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentPartitionRepository {
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Создать недостающие секции на [fromDay, fromDay + daysAhead]; возвращает число созданных
+     */
+    public Mono<Integer> ensurePartitions(LocalDate fromDay, int daysAhead) {
+        return databaseClient.sql("SELECT ensure_payments_partitions(:fromDay, :daysAhead)")
+                .bind("fromDay", fromDay)
+                .bind("daysAhead", daysAhead)
+                .map((row, metadata) -> row.get(0, Integer.class))
+                .one();
+    }
+
+    /**
+     * Отсоединить или удалить секции целиком старше keepFrom; возвращает их число
+     */
+    public Mono<Integer> expirePartitions(LocalDate keepFrom, boolean detachOnly) {
+        return databaseClient.sql("SELECT expire_payments_partitions(:keepFrom, :detachOnly)")
+                .bind("keepFrom", keepFrom)
+                .bind("detachOnly", detachOnly)
+                .map((row, metadata) -> row.get(0, Integer.class))
+                .one();
+    }
+}
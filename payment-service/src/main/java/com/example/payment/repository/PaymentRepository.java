@@ -7,18 +7,74 @@ import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
+/**
+ * payments секционирована по created_at: запросы либо ограничивают created_at,
+ * чтобы планировщик читал только нужные секции, либо обходят секции по порядку с LIMIT.
+ * Запросы по плательщику и статусу ограничены снизу since (PaymentPartitionMaintenance.retainedSince):
+ * секции старше retention, еще не отсоединенные обслуживанием, отсекаются
+ */
 @Repository
 public interface PaymentRepository extends ReactiveCrudRepository<PaymentEntity, UUID> {
 
-    Flux<PaymentEntity> findByStatus(String status);
+    /**
+     * Количество и сумма платежей плательщика в одной валюте
+     */
+    record CurrencyTotal(String currency, long paymentCount, BigDecimal totalAmount) {
+    }
 
-    @Query("SELECT * FROM payments ORDER BY created_at DESC LIMIT :limit")
+    // Из-за секции DEFAULT (ее диапазон не упорядочен относительно дневных) план - MergeAppend
+    // по индексам idx_payments_created_at_id всех секций, а не упорядоченный Append: каждая секция
+    // делает один спуск по индексу, дальше читается около limit строк. Цена растет с числом секций, не с объемом
+    String FIND_LATEST = "SELECT * FROM payments ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    // Keyset-пагинация: следующая страница после (createdAt, id), индекс idx_payments_created_at_id.
+    // Условие created_at <= :createdAt отсекает более новые секции
+    String FIND_LATEST_BEFORE = "SELECT * FROM payments WHERE created_at <= :createdAt " +
+            "AND (created_at, id) < (:createdAt, :id) ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    // created_at берется из payment_keys, поэтому читается одна секция
+    String FIND_BY_ID = "SELECT * FROM payments WHERE id = :id " +
+            "AND created_at = (SELECT created_at FROM payment_keys WHERE id = :id)";
+
+    @Query(FIND_LATEST)
     Flux<PaymentEntity> findLatestPayments(int limit);
 
-    Flux<PaymentEntity> findByPayerEmail(String payerEmail);
+    @Query(FIND_LATEST_BEFORE)
+    Flux<PaymentEntity> findLatestPaymentsBefore(LocalDateTime createdAt, UUID id, int limit);
+
+    // Платежи плательщика от новых к старым, индекс idx_payments_payer_email_created_at
+    @Query("SELECT * FROM payments WHERE payer_email = :payerEmail AND created_at >= :since " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit")
+    Flux<PaymentEntity> findPayerPayments(String payerEmail, LocalDateTime since, int limit);
+
+    @Query("SELECT * FROM payments WHERE payer_email = :payerEmail AND created_at >= :since " +
+            "AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit")
+    Flux<PaymentEntity> findPayerPaymentsBefore(String payerEmail, LocalDateTime since, LocalDateTime createdAt,
+                                                UUID id, int limit);
+
+    // payment_currency_name и payment_amount одинаково читают обычную и компактную схему
+    @Query("SELECT payment_currency_name(currency) AS currency, count(*) AS payment_count, " +
+            "coalesce(sum(payment_amount(amount)), 0) AS total_amount " +
+            "FROM payments WHERE payer_email = :payerEmail AND created_at >= :since GROUP BY currency")
+    Flux<CurrencyTotal> findPayerTotals(String payerEmail, LocalDateTime since);
+
+    // Платежи в статусе от новых к старым, индекс idx_payments_status_created_at.
+    // status - значение колонки, см. PaymentStorageFormat.status
+    @Query("SELECT * FROM payments WHERE status = :status AND created_at >= :since " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit")
+    Flux<PaymentEntity> findStatusPayments(Object status, LocalDateTime since, int limit);
+
+    @Query("SELECT * FROM payments WHERE status = :status AND created_at >= :since " +
+            "AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit")
+    Flux<PaymentEntity> findStatusPaymentsBefore(Object status, LocalDateTime since, LocalDateTime createdAt,
+                                                 UUID id, int limit);
 
-    @Query("SELECT COUNT(*) > 0 FROM payments WHERE transaction_id = :transactionId")
-    Mono<Boolean> existsByTransactionId(String transactionId);
+    @Query(FIND_BY_ID)
+    Mono<PaymentEntity> findPaymentById(UUID id);
 }
@@ -0,0 +1,42 @@
+package com.example.payment.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Фильтры поиска платежей; null - фильтр не задан.
+ * Диапазоны: amount - [minAmount, maxAmount], created_at - [from, to)
+ */
+public record PaymentSearchCriteria(BigDecimal minAmount,
+                                    BigDecimal maxAmount,
+                                    LocalDateTime from,
+                                    LocalDateTime to,
+                                    String currency,
+                                    String status,
+                                    String recipientAccount) {
+
+    /**
+     * Форма фильтра - набор заданных фильтров без значений, для тега метрик
+     */
+    public String shape() {
+        List<String> parts = new ArrayList<>(5);
+        if (minAmount != null || maxAmount != null) {
+            parts.add("amount");
+        }
+        if (currency != null) {
+            parts.add("currency");
+        }
+        if (from != null || to != null) {
+            parts.add("date");
+        }
+        if (recipientAccount != null) {
+            parts.add("recipient");
+        }
+        if (status != null) {
+            parts.add("status");
+        }
+        return parts.isEmpty() ? "none" : String.join("+", parts);
+    }
+}
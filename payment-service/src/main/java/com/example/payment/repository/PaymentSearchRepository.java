@@ -0,0 +1,144 @@
+package com.example.payment.repository;
+
+import com.example.payment.entity.PaymentEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Поиск платежей по набору фильтров.
+ * Все фильтры и keyset-курсор уходят в WHERE, читаются только запрошенные колонки:
+ * для частых сочетаний фильтров есть покрывающие индексы idx_payments_search_*.
+ * SQL собирается вручную и параметры привязываются как есть: Criteria API привел бы
+ * SMALLINT/BIGINT-значения компактной схемы к типам свойств PaymentEntity (String, BigDecimal)
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentSearchRepository {
+
+    /**
+     * Поля, доступные для выборки: имя поля в ответе -> колонка и значение из PaymentEntity
+     */
+    public static final Map<String, Field> FIELDS = fields(
+            new Field("id", "id", PaymentEntity::getId),
+            new Field("amount", "amount", PaymentEntity::getAmount),
+            new Field("currency", "currency", PaymentEntity::getCurrency),
+            new Field("description", "description", PaymentEntity::getDescription),
+            new Field("status", "status", PaymentEntity::getStatus),
+            new Field("payerName", "payer_name", PaymentEntity::getPayerName),
+            new Field("payerEmail", "payer_email", PaymentEntity::getPayerEmail),
+            new Field("recipientName", "recipient_name", PaymentEntity::getRecipientName),
+            new Field("recipientAccount", "recipient_account", PaymentEntity::getRecipientAccount),
+            new Field("transactionId", "transaction_id", PaymentEntity::getTransactionId),
+            new Field("createdAt", "created_at", PaymentEntity::getCreatedAt),
+            new Field("updatedAt", "updated_at", PaymentEntity::getUpdatedAt));
+
+    public record Field(String name, String column, Function<PaymentEntity, Object> getter) {
+    }
+
+    /**
+     * Текст запроса и значения именованных параметров
+     */
+    record SearchStatement(String sql, Map<String, Object> bindings) {
+    }
+
+    private final R2dbcEntityTemplate template;
+    private final PaymentStorageFormat storageFormat;
+
+    /**
+     * Найти до limit платежей после (afterCreatedAt, afterId) от новых к старым; без курсора оба null.
+     * columns - колонки для чтения (только из FIELDS), пусто - все; created_at и id читаются всегда, они нужны курсору
+     */
+    public Flux<PaymentEntity> search(PaymentSearchCriteria criteria, LocalDateTime afterCreatedAt, UUID afterId,
+                                      Collection<String> columns, int limit) {
+        SearchStatement statement = statement(criteria, afterCreatedAt, afterId, columns, limit);
+        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient().sql(statement.sql());
+        for (Map.Entry<String, Object> binding : statement.bindings().entrySet()) {
+            spec = spec.bind(binding.getKey(), binding.getValue());
+        }
+        // Конвертер шаблона учитывает схему хранения и пропускает колонки, которых нет в выборке
+        return spec.map((row, metadata) -> template.getConverter().read(PaymentEntity.class, row, metadata))
+                .all();
+    }
+
+    SearchStatement statement(PaymentSearchCriteria criteria, LocalDateTime afterCreatedAt, UUID afterId,
+                              Collection<String> columns, int limit) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> bindings = new LinkedHashMap<>();
+        if (criteria.minAmount() != null) {
+            conditions.add("amount >= :minAmount");
+            bindings.put("minAmount", storageFormat.amount(criteria.minAmount()));
+        }
+        if (criteria.maxAmount() != null) {
+            conditions.add("amount <= :maxAmount");
+            bindings.put("maxAmount", storageFormat.amount(criteria.maxAmount()));
+        }
+        if (criteria.from() != null) {
+            conditions.add("created_at >= :from");
+            bindings.put("from", criteria.from());
+        }
+        if (criteria.to() != null) {
+            conditions.add("created_at < :to");
+            bindings.put("to", criteria.to());
+        }
+        if (criteria.currency() != null) {
+            conditions.add("currency = :currency");
+            bindings.put("currency", storageFormat.currency(criteria.currency()));
+        }
+        if (criteria.status() != null) {
+            conditions.add("status = :status");
+            bindings.put("status", storageFormat.status(criteria.status()));
+        }
+        if (criteria.recipientAccount() != null) {
+            conditions.add("recipient_account = :recipientAccount");
+            bindings.put("recipientAccount", criteria.recipientAccount());
+        }
+        if (afterCreatedAt != null) {
+            // Отдельное created_at <= :afterCreatedAt отсекает более новые секции
+            conditions.add("created_at <= :afterCreatedAt");
+            conditions.add("(created_at, id) < (:afterCreatedAt, :afterId)");
+            bindings.put("afterCreatedAt", afterCreatedAt);
+            bindings.put("afterId", afterId);
+        }
+        bindings.put("limit", limit);
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (columns.isEmpty()) {
+            sql.append('*');
+        } else {
+            Set<String> selected = new LinkedHashSet<>();
+            selected.add("id");
+            selected.add("created_at");
+            selected.addAll(columns);
+            sql.append(String.join(", ", selected));
+        }
+        sql.append(" FROM payments");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT :limit");
+        return new SearchStatement(sql.toString(), bindings);
+    }
+
+    private static Map<String, Field> fields(Field... fields) {
+        Map<String, Field> byName = new LinkedHashMap<>();
+        for (Field field : fields) {
+            byName.put(field.name(), field);
+        }
+        return Collections.unmodifiableMap(byName);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.payment.repository;
+
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Таблица payment_stats: количество и сумма платежей (в копейках) по валюте, статусу и минуте
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentStatsRepository {
+
+    public record StatsRow(String currency, String status, LocalDateTime bucketStart, long count, long amountMinor) {
+    }
+
+    private static final String UPSERT_PREFIX =
+            "INSERT INTO payment_stats (currency, status, bucket_start, payment_count, amount_minor) VALUES ";
+    private static final String UPSERT_SUFFIX = " ON CONFLICT (currency, status, bucket_start) DO UPDATE SET " +
+            "payment_count = payment_stats.payment_count + EXCLUDED.payment_count, " +
+            "amount_minor = payment_stats.amount_minor + EXCLUDED.amount_minor";
+    private static final int COLUMNS = 5;
+    private static final int MAX_ROWS_PER_STATEMENT = 65535 / COLUMNS;
+
+    private final DatabaseClient databaseClient;
+
+    public Flux<StatsRow> findSince(LocalDateTime since) {
+        return databaseClient.sql("SELECT currency, status, bucket_start, payment_count, amount_minor " +
+                        "FROM payment_stats WHERE bucket_start >= :since")
+                .bind("since", since)
+                .map((row, metadata) -> new StatsRow(
+                        row.get("currency", String.class),
+                        row.get("status", String.class),
+                        row.get("bucket_start", LocalDateTime.class),
+                        row.get("payment_count", Long.class),
+                        row.get("amount_minor", Long.class)))
+                .all();
+    }
+
+    public Mono<Boolean> isEmpty() {
+        return databaseClient.sql("SELECT NOT EXISTS(SELECT 1 FROM payment_stats)")
+                .map((row, metadata) -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    /**
+     * Разовый пересчет агрегатов по таблице payments за [since, until)
+     * (полный проход, только для начального заполнения)
+     */
+    public Flux<StatsRow> aggregatePayments(LocalDateTime since, LocalDateTime until) {
+        return databaseClient.sql("SELECT payment_currency_name(currency) AS currency, " +
+                        "payment_status_name(status) AS status, date_trunc('minute', created_at) AS bucket_start, " +
+                        "count(*) AS payment_count, coalesce(sum(payment_amount_minor(amount)), 0)::bigint AS amount_minor " +
+                        "FROM payments WHERE created_at >= :since AND created_at < :until GROUP BY 1, 2, 3")
+                .bind("since", since)
+                .bind("until", until)
+                .map((row, metadata) -> new StatsRow(
+                        row.get("currency", String.class),
+                        row.get("status", String.class),
+                        row.get("bucket_start", LocalDateTime.class),
+                        row.get("payment_count", Long.class),
+                        row.get("amount_minor", Long.class)))
+                .all();
+    }
+
+    /**
+     * Прибавить приращения к строкам payment_stats (строка создается при отсутствии)
+     */
+    public Mono<Void> addDeltas(List<StatsRow> deltas) {
+        if (deltas.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(deltas)
+                .buffer(MAX_ROWS_PER_STATEMENT)
+                .concatMap(chunk -> databaseClient.inConnectionMany(connection -> {
+                    Statement statement = connection.createStatement(buildUpsertSql(chunk.size()));
+                    int index = 0;
+                    for (StatsRow delta : chunk) {
+                        statement.bind(index++, delta.currency())
+                                .bind(index++, delta.status())
+                                .bind(index++, delta.bucketStart())
+                                .bind(index++, delta.count())
+                                .bind(index++, delta.amountMinor());
+                    }
+                    return Flux.from(statement.execute()).flatMap(result -> result.getRowsUpdated());
+                }))
+                .then();
+    }
+
+    private static String buildUpsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX.length() + UPSERT_SUFFIX.length() + rows * COLUMNS * 6);
+        sql.append(UPSERT_PREFIX);
+        int param = 1;
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sql.append(',');
+            }
+            sql.append('(');
+            for (int column = 0; column < COLUMNS; column++) {
+                if (column > 0) {
+                    sql.append(',');
+                }
+                sql.append('$').append(param++);
+            }
+            sql.append(')');
+        }
+        sql.append(UPSERT_SUFFIX);
+        return sql.toString();
+    }
+}
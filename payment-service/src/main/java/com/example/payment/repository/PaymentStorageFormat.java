@@ -0,0 +1,52 @@
+package com.example.payment.repository;
+
+import com.example.payment.entity.CurrencyCode;
+import com.example.payment.entity.PaymentStatusCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Представление amount, currency и status в колонках payments.
+ * Обычная схема: DECIMAL(19,2) и строки; компактная (payment.storage.compact=true):
+ * BIGINT в копейках и SMALLINT-коды. Значения для привязки к SQL-параметрам проходят через этот класс
+ */
+@Component
+public class PaymentStorageFormat {
+
+    public static final int AMOUNT_SCALE = 2;
+
+    private final boolean compact;
+
+    public PaymentStorageFormat(@Value("${payment.storage.compact:false}") boolean compact) {
+        this.compact = compact;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public Object amount(BigDecimal amount) {
+        return compact ? toMinorUnits(amount) : amount;
+    }
+
+    /**
+     * Валюта для привязки к параметру; в компактной схеме неизвестная валюта - IllegalArgumentException
+     */
+    public Object currency(String currency) {
+        return compact ? CurrencyCode.codeOf(currency) : currency;
+    }
+
+    /**
+     * Статус для привязки к параметру; в компактной схеме неизвестный статус - IllegalArgumentException
+     */
+    public Object status(String status) {
+        return compact ? PaymentStatusCode.codeOf(status) : status;
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
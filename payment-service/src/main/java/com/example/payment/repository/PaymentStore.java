@@ -0,0 +1,34 @@
+package com.example.payment.repository;
+
+import com.example.payment.entity.PaymentEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Горячие операции над payments, которые обслуживает сменный движок доступа к БД:
+ * вставка пачкой, последние N, страница по курсору и поиск по id.
+ * По умолчанию - R2DBC; профиль jdbc переключает их на JDBC с виртуальными потоками.
+ * Остальные запросы (поиск, страницы плательщика и статуса, агрегаты) всегда идут через R2DBC
+ */
+public interface PaymentStore {
+
+    /**
+     * Вставить пачку платежей; возвращает id реально вставленных, дубликаты пропускаются
+     */
+    Flux<UUID> insertAll(List<PaymentEntity> entities);
+
+    /**
+     * Прогрев: вставить пачку тем же путем, что insertAll, и откатить транзакцию - данные не меняются
+     */
+    Mono<Void> warmUpInsert(List<PaymentEntity> entities);
+
+    Flux<PaymentEntity> findLatestPayments(int limit);
+
+    Flux<PaymentEntity> findLatestPaymentsBefore(LocalDateTime createdAt, UUID id, int limit);
+
+    Mono<PaymentEntity> findPaymentById(UUID id);
+}
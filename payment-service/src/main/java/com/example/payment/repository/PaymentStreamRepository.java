@@ -0,0 +1,28 @@
+package com.example.payment.repository;
+
+import com.example.payment.entity.PaymentEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Потоковое чтение таблицы payments через курсор (portal) PostgreSQL.
+ * Строки запрашиваются порциями по fetchSize по мере спроса подписчика,
+ * поэтому память не зависит от размера таблицы
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentStreamRepository {
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter r2dbcConverter;
+
+    public Flux<PaymentEntity> streamAll(int fetchSize) {
+        return databaseClient.sql("SELECT * FROM payments")
+                .filter((statement, next) -> next.execute(statement.fetchSize(fetchSize)))
+                .map((row, metadata) -> r2dbcConverter.read(PaymentEntity.class, row, metadata))
+                .all();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.payment.repository;
+
+import com.example.payment.entity.PaymentEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * PaymentStore поверх R2DBC: multi-row INSERT из PaymentBatchRepository и запросы PaymentRepository
+ */
+@Repository
+@Profile("!jdbc")
+@RequiredArgsConstructor
+public class R2dbcPaymentStore implements PaymentStore {
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentBatchRepository paymentBatchRepository;
+    private final ReactiveTransactionManager transactionManager;
+
+    @Override
+    public Flux<UUID> insertAll(List<PaymentEntity> entities) {
+        return paymentBatchRepository.insertAll(entities);
+    }
+
+    @Override
+    public Mono<Void> warmUpInsert(List<PaymentEntity> entities) {
+        return TransactionalOperator.create(transactionManager).execute(status -> {
+            status.setRollbackOnly();
+            return paymentBatchRepository.insertAllUnmetered(entities);
+        }).then();
+    }
+
+    @Override
+    public Flux<PaymentEntity> findLatestPayments(int limit) {
+        return paymentRepository.findLatestPayments(limit);
+    }
+
+    @Override
+    public Flux<PaymentEntity> findLatestPaymentsBefore(LocalDateTime createdAt, UUID id, int limit) {
+        return paymentRepository.findLatestPaymentsBefore(createdAt, id, limit);
+    }
+
+    @Override
+    public Mono<PaymentEntity> findPaymentById(UUID id) {
+        return paymentRepository.findPaymentById(id);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Хеджирование запросов к внешнему сервису: если ответ не пришел за задержку,
+ * равную заданному перцентилю недавних ответов, отправляется второй такой же запрос
+ * и берется тот, что ответит первым.
+ * Доля дополнительных запросов ограничена бюджетом budget-ratio от числа основных
+ */
+@Slf4j
+@Component
+public class HedgedRequests {
+
+    // Количество последних замеров, по которым считается перцентиль
+    private static final int WINDOW = 1024;
+    // Как часто пересчитывать задержку хеджирования (в замерах)
+    private static final int RECOMPUTE_EVERY = 128;
+    // Бюджет хранится в тысячных долях запроса
+    private static final long TOKEN = 1000;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final long tokensPerRequest;
+    private final long maxTokens;
+
+    private final AtomicLongArray samples = new AtomicLongArray(WINDOW);
+    private final AtomicLong sampleCursor = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private volatile long delayNanos;
+
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter budgetExhausted;
+
+    public HedgedRequests(MeterRegistry meterRegistry,
+                          @Value("${mock.client.hedging.enabled:false}") boolean enabled,
+                          @Value("${mock.client.hedging.percentile:0.95}") double percentile,
+                          @Value("${mock.client.hedging.min-delay:5ms}") Duration minDelay,
+                          @Value("${mock.client.hedging.max-delay:1s}") Duration maxDelay,
+                          @Value("${mock.client.hedging.budget-ratio:0.05}") double budgetRatio,
+                          @Value("${mock.client.hedging.max-burst:50}") int maxBurst) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.tokensPerRequest = Math.round(budgetRatio * TOKEN);
+        this.maxTokens = maxBurst * TOKEN;
+        this.delayNanos = maxDelayNanos; // Пока замеров нет, хеджируем только очень медленные ответы
+
+        Gauge.builder("payment.upstream.hedge.delay", this, hedged -> hedged.delayNanos)
+                .description("Current delay before a hedged request is sent")
+                .baseUnit("nanoseconds")
+                .register(meterRegistry);
+        hedgesSent = Counter.builder("payment.upstream.hedge.sent")
+                .description("Hedged requests sent to the mock service")
+                .register(meterRegistry);
+        hedgesWon = Counter.builder("payment.upstream.hedge.won")
+                .description("Hedged requests that answered before the primary one")
+                .register(meterRegistry);
+        budgetExhausted = Counter.builder("payment.upstream.hedge.budget.exhausted")
+                .description("Hedges skipped because the hedging budget was spent")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполнить запрос с хеджированием. request вызывается на каждую попытку;
+     * проигравшая попытка отменяется
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> request) {
+        if (!enabled) {
+            return request.get();
+        }
+        return Mono.defer(() -> {
+            deposit();
+            Mono<T> primary = timed(request.get());
+            Mono<T> hedge = Mono.delay(Duration.ofNanos(delayNanos))
+                    .filter(tick -> tryWithdraw())
+                    .flatMap(tick -> {
+                        hedgesSent.increment();
+                        return request.get().doOnNext(value -> hedgesWon.increment());
+                    })
+                    // Неотправленный или упавший хедж не должен завершать гонку раньше основного запроса
+                    .onErrorResume(error -> Mono.empty())
+                    .switchIfEmpty(Mono.never());
+            return Mono.firstWithSignal(primary, hedge);
+        });
+    }
+
+    /**
+     * Замер задержки основного запроса. Хедж в выборку не попадает: иначе выигравшие хеджи заменили бы
+     * в ней медленные ответы быстрыми, и перцентиль сползал бы вниз. Основной запрос, отмененный
+     * выигравшим хеджем, записывается временем до отмены - его задержка не меньше этого
+     */
+    private <T> Mono<T> timed(Mono<T> attempt) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean recorded = new AtomicBoolean();
+            Runnable sample = () -> {
+                if (recorded.compareAndSet(false, true)) {
+                    recordSample(System.nanoTime() - start);
+                }
+            };
+            return attempt
+                    .doOnNext(value -> sample.run())
+                    .doOnCancel(sample);
+        });
+    }
+
+    private void recordSample(long nanos) {
+        long index = sampleCursor.getAndIncrement();
+        samples.set((int) (index % WINDOW), nanos);
+        if ((index + 1) % RECOMPUTE_EVERY == 0) {
+            recomputeDelay(Math.min(index + 1, WINDOW));
+        }
+    }
+
+    private void recomputeDelay(long count) {
+        long[] sorted = new long[(int) count];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        long value = sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))];
+        delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, value));
+        log.debug("Hedging delay set to {} ms", TimeUnit.NANOSECONDS.toMillis(delayNanos));
+    }
+
+    private void deposit() {
+        tokens.getAndUpdate(current -> Math.min(maxTokens, current + tokensPerRequest));
+    }
+
+    private boolean tryWithdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                budgetExhausted.increment();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.payment.service;
+
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.repository.PaymentStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Последние capacity платежей в памяти, в порядке (created_at DESC, id DESC) - как в БД.
+ * createdAt приходит из внешнего сервиса и не совпадает с порядком вставки,
+ * поэтому вместо кольцевого буфера используется lock-free skip list с вытеснением самых старых.
+ * Прогревается из БД при старте и пополняется после каждой успешной вставки этим экземпляром
+ */
+@Slf4j
+@Component
+public class LatestPaymentsBuffer {
+
+    private static final Comparator<PaymentEntity> NEWEST_FIRST = Comparator
+            .comparing(PaymentEntity::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(PaymentEntity::getId, Comparator.reverseOrder());
+
+    private final PaymentStore paymentStore;
+    private final int capacity;
+    private final ConcurrentSkipListSet<PaymentEntity> payments = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean warmedUp;
+
+    public LatestPaymentsBuffer(PaymentStore paymentStore,
+                                @Value("${payment.latest.capacity:1000}") int capacity) {
+        this.paymentStore = paymentStore;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Прогрев из БД; до его завершения запросы обслуживает БД
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        paymentStore.findLatestPayments(capacity)
+                .doOnNext(this::add)
+                .doOnComplete(() -> {
+                    warmedUp = true;
+                    log.info("Latest payments buffer warmed up with {} payments", size.get());
+                })
+                .doOnError(error -> log.error("Error warming up latest payments buffer", error))
+                .subscribe();
+    }
+
+    public void add(PaymentEntity payment) {
+        if (size.get() >= capacity) {
+            Iterator<PaymentEntity> oldest = payments.descendingIterator();
+            if (oldest.hasNext() && NEWEST_FIRST.compare(payment, oldest.next()) >= 0) {
+                return; // Старше всех в буфере - не попадает в последние capacity
+            }
+        }
+        if (payments.add(payment) && size.incrementAndGet() > capacity) {
+            if (payments.pollLast() != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Может ли буфер ответить на запрос limit последних платежей
+     */
+    public boolean canServe(int limit) {
+        return warmedUp && limit <= capacity;
+    }
+
+    /**
+     * Снимок первых limit платежей
+     */
+    public List<PaymentEntity> latest(int limit) {
+        List<PaymentEntity> snapshot = new ArrayList<>(Math.min(limit, size.get()));
+        Iterator<PaymentEntity> iterator = payments.iterator();
+        while (snapshot.size() < limit && iterator.hasNext()) {
+            snapshot.add(iterator.next());
+        }
+        return snapshot;
+    }
+}
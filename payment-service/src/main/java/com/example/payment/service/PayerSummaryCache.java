@@ -0,0 +1,69 @@
+package com.example.payment.service;
+
+import com.example.payment.dto.PayerSummaryDto;
+import com.example.payment.metrics.PaymentMetrics;
+import com.example.payment.repository.PaymentRepository;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.TreeMap;
+
+/**
+ * Кэш сводок по плательщику (количество, суммы по валютам, последний платеж).
+ * Сводка считается по индексу payer_email за срок хранения секций payments
+ * и сбрасывается при каждой вставке платежа этого плательщика
+ */
+@Component
+public class PayerSummaryCache {
+
+    private final AsyncLoadingCache<String, PayerSummaryDto> cache;
+
+    public PayerSummaryCache(PaymentRepository paymentRepository,
+                             PaymentPartitionMaintenance partitionMaintenance,
+                             PaymentMetrics paymentMetrics,
+                             @Value("${payment.payer-summary.max-size:10000}") long maxSize,
+                             @Value("${payment.payer-summary.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync((payerEmail, executor) ->
+                        load(paymentRepository, payerEmail, partitionMaintenance.retainedSince()).toFuture());
+        paymentMetrics.bindCache(cache, "payments.payer-summary");
+    }
+
+    private static Mono<PayerSummaryDto> load(PaymentRepository paymentRepository, String payerEmail,
+                                              LocalDateTime since) {
+        return paymentRepository.findPayerTotals(payerEmail, since)
+                .collectList()
+                .zipWith(paymentRepository.findPayerPayments(payerEmail, since, 1).collectList())
+                .map(result -> {
+                    TreeMap<String, BigDecimal> totalByCurrency = new TreeMap<>();
+                    long paymentCount = 0;
+                    for (PaymentRepository.CurrencyTotal total : result.getT1()) {
+                        totalByCurrency.put(total.currency(), total.totalAmount());
+                        paymentCount += total.paymentCount();
+                    }
+                    return new PayerSummaryDto(payerEmail, paymentCount, totalByCurrency,
+                            result.getT2().isEmpty() ? null : result.getT2().get(0));
+                });
+    }
+
+    public Mono<PayerSummaryDto> get(String payerEmail) {
+        // suppressCancel: отмена одного подписчика не отменяет общую загрузку
+        return Mono.fromFuture(() -> cache.get(payerEmail), true);
+    }
+
+    /**
+     * Сбросить сводку после вставки платежа; уже идущая загрузка в кэш не попадет
+     */
+    public void invalidate(String payerEmail) {
+        cache.synchronous().invalidate(payerEmail);
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.payment.service;
+
+import com.example.payment.dto.PaymentStatsDto;
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.repository.PaymentStatsRepository;
+import com.example.payment.repository.PaymentStorageFormat;
+import com.example.payment.repository.PaymentStatsRepository.StatsRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Агрегаты платежей (количество и сумма) по валюте, статусу и минуте created_at,
+ * обновляемые в памяти после каждой вставки. Запрос статистики проходит по корзинам, а не по строкам.
+ * Суммы хранятся в копейках (long) в LongAdder, чтобы параллельные вставки не конкурировали за блокировку.
+ * Раз в checkpoint-interval накопленные приращения прибавляются к таблице payment_stats,
+ * при старте агрегаты восстанавливаются из нее.
+ * Платежи, вставленные после последнего checkpoint до аварийной остановки, в агрегаты не попадут.
+ * Вставки до окончания восстановления (например, проигрывание журнала write-behind) копятся в pending
+ * и применяются после него, чтобы начальный пересчет по payments не учел их второй раз
+ */
+@Slf4j
+@Component
+public class PaymentAggregates {
+
+    private record Key(String currency, String status, LocalDateTime bucketStart) {
+    }
+
+    private static final class Cell {
+        final LongAdder count = new LongAdder();
+        final LongAdder amountMinor = new LongAdder();
+        // Сколько уже записано в payment_stats; меняется только потоком checkpoint
+        long checkpointedCount;
+        long checkpointedAmountMinor;
+
+        /**
+         * Сравниваются оба счетчика: count и amountMinor растут раздельно, и снимок между ними
+         * мог записать count без суммы - остаток суммы уйдет следующим checkpoint
+         */
+        boolean isCheckpointed(long count, long amountMinor) {
+            return count == checkpointedCount && amountMinor == checkpointedAmountMinor;
+        }
+    }
+
+    private final PaymentStatsRepository paymentStatsRepository;
+    private final Duration checkpointInterval;
+    private final Duration retention;
+    private final ConcurrentHashMap<Key, Cell> cells = new ConcurrentHashMap<>();
+    private final Queue<PaymentEntity> pending = new ConcurrentLinkedQueue<>();
+    private final Object pendingLock = new Object();
+    private volatile boolean ready;
+    private Disposable checkpointer;
+
+    public PaymentAggregates(PaymentStatsRepository paymentStatsRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${payment.stats.checkpoint-interval:10s}") Duration checkpointInterval,
+                             @Value("${payment.stats.retention:7d}") Duration retention) {
+        this.paymentStatsRepository = paymentStatsRepository;
+        this.checkpointInterval = checkpointInterval;
+        this.retention = retention;
+
+        Gauge.builder("payment.stats.buckets", cells, Map::size)
+                .description("Number of in-memory payment aggregate buckets")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Восстановление из payment_stats; если таблица пуста - однократный пересчет по payments до horizon.
+     * Накопленные за это время вставки с created_at раньше horizon пересчет уже учел и они отбрасываются;
+     * при восстановлении из payment_stats их там еще нет и применяются все.
+     * Checkpoint запускается только после восстановления, иначе он записал бы неполные приращения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        LocalDateTime horizon = LocalDateTime.now();
+        LocalDateTime since = horizon.minus(retention).truncatedTo(ChronoUnit.MINUTES);
+        paymentStatsRepository.isEmpty()
+                .flatMap(empty -> (empty
+                        ? paymentStatsRepository.aggregatePayments(since, horizon).doOnNext(row -> restoreRow(row, false))
+                        : paymentStatsRepository.findSince(since).doOnNext(row -> restoreRow(row, true)))
+                        .then(Mono.just(empty)))
+                .doOnSuccess(bootstrapped -> {
+                    applyPending(bootstrapped ? horizon : null);
+                    checkpointer = Flux.interval(checkpointInterval)
+                            .concatMap(tick -> checkpoint()
+                                    .onErrorResume(error -> {
+                                        log.error("Error checkpointing payment aggregates", error);
+                                        return Mono.empty();
+                                    }))
+                            .subscribe();
+                    log.info("Payment aggregates restored: {} buckets", cells.size());
+                })
+                .doOnError(error -> log.error("Error restoring payment aggregates", error))
+                .subscribe();
+    }
+
+    private void restoreRow(StatsRow row, boolean checkpointed) {
+        Cell cell = cells.computeIfAbsent(new Key(row.currency(), row.status(), row.bucketStart()), key -> new Cell());
+        cell.count.add(row.count());
+        cell.amountMinor.add(row.amountMinor());
+        if (checkpointed) {
+            cell.checkpointedCount += row.count();
+            cell.checkpointedAmountMinor += row.amountMinor();
+        }
+    }
+
+    /**
+     * Применить отложенные до восстановления вставки и переключить add() на прямое обновление.
+     * Вставки с created_at раньше skipBefore пропускаются
+     */
+    private void applyPending(LocalDateTime skipBefore) {
+        synchronized (pendingLock) {
+            int skipped = 0;
+            for (PaymentEntity payment; (payment = pending.poll()) != null; ) {
+                if (skipBefore != null && payment.getCreatedAt().isBefore(skipBefore)) {
+                    skipped++;
+                } else {
+                    apply(payment);
+                }
+            }
+            ready = true;
+            if (skipped > 0) {
+                log.info("Skipped {} payments inserted during restore, already counted by the recount", skipped);
+            }
+        }
+    }
+
+    /**
+     * Учесть успешно вставленный платеж; до окончания восстановления он откладывается
+     */
+    public void add(PaymentEntity payment) {
+        if (!ready) {
+            synchronized (pendingLock) {
+                if (!ready) {
+                    pending.add(payment);
+                    return;
+                }
+            }
+        }
+        apply(payment);
+    }
+
+    private void apply(PaymentEntity payment) {
+        Key key = new Key(payment.getCurrency(), payment.getStatus(),
+                payment.getCreatedAt().truncatedTo(ChronoUnit.MINUTES));
+        Cell cell = cells.computeIfAbsent(key, k -> new Cell());
+        cell.count.increment();
+        cell.amountMinor.add(toMinor(payment.getAmount()));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Агрегаты за [from, to) с корзинами размера unit (MINUTES, HOURS, DAYS).
+     * currency и status - необязательные фильтры
+     */
+    public List<PaymentStatsDto> query(LocalDateTime from, LocalDateTime to, ChronoUnit unit,
+                                       String currency, String status) {
+        Map<Key, long[]> totals = new HashMap<>();
+        cells.forEach((key, cell) -> {
+            if (key.bucketStart().isBefore(from) || !key.bucketStart().isBefore(to)
+                    || (currency != null && !currency.equals(key.currency()))
+                    || (status != null && !status.equals(key.status()))) {
+                return;
+            }
+            long[] total = totals.computeIfAbsent(
+                    new Key(key.currency(), key.status(), key.bucketStart().truncatedTo(unit)), k -> new long[2]);
+            total[0] += cell.count.sum();
+            total[1] += cell.amountMinor.sum();
+        });
+
+        List<PaymentStatsDto> result = new ArrayList<>(totals.size());
+        totals.forEach((key, total) -> result.add(new PaymentStatsDto(key.bucketStart(), key.currency(),
+                key.status(), total[0], BigDecimal.valueOf(total[1], PaymentStorageFormat.AMOUNT_SCALE))));
+        result.sort(Comparator.comparing(PaymentStatsDto::getBucketStart)
+                .thenComparing(PaymentStatsDto::getCurrency)
+                .thenComparing(PaymentStatsDto::getStatus));
+        return result;
+    }
+
+    /**
+     * Прибавить к payment_stats все приращения с прошлого checkpoint и вытеснить старые корзины из памяти
+     */
+    Mono<Void> checkpoint() {
+        return Mono.defer(() -> {
+            List<PendingDelta> pending = new ArrayList<>();
+            cells.forEach((key, cell) -> {
+                long count = cell.count.sum();
+                long amountMinor = cell.amountMinor.sum();
+                if (!cell.isCheckpointed(count, amountMinor)) {
+                    pending.add(new PendingDelta(key, cell, count, amountMinor));
+                }
+            });
+            List<StatsRow> deltas = pending.stream().map(PendingDelta::toRow).toList();
+
+            return paymentStatsRepository.addDeltas(deltas)
+                    .doOnSuccess(done -> {
+                        pending.forEach(PendingDelta::markCheckpointed);
+                        evictExpired();
+                        log.debug("Checkpointed {} payment aggregate buckets", deltas.size());
+                    });
+        });
+    }
+
+    private record PendingDelta(Key key, Cell cell, long count, long amountMinor) {
+
+        StatsRow toRow() {
+            return new StatsRow(key.currency(), key.status(), key.bucketStart(),
+                    count - cell.checkpointedCount, amountMinor - cell.checkpointedAmountMinor);
+        }
+
+        void markCheckpointed() {
+            cell.checkpointedCount = count;
+            cell.checkpointedAmountMinor = amountMinor;
+        }
+    }
+
+    private void evictExpired() {
+        LocalDateTime horizon = LocalDateTime.now().minus(retention);
+        cells.entrySet().removeIf(entry -> {
+            Cell cell = entry.getValue();
+            return entry.getKey().bucketStart().isBefore(horizon)
+                    && cell.isCheckpointed(cell.count.sum(), cell.amountMinor.sum());
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (checkpointer == null) {
+            return;
+        }
+        checkpointer.dispose();
+        checkpoint().block(Duration.ofSeconds(10));
+    }
+
+    private static long toMinor(BigDecimal amount) {
+        return amount == null ? 0 : PaymentStorageFormat.toMinorUnits(amount);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.payment.service;
+
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.metrics.PaymentMetrics;
+import com.example.payment.repository.PaymentStore;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Read-through кэш платежей по id, ограниченный по размеру и TTL.
+ * Одновременные промахи по одному ключу схлопываются в один запрос к БД.
+ * Ключ - строковый id из запроса, чтобы попадание обходилось без разбора UUID
+ */
+@Component
+public class PaymentCache {
+
+    private final AsyncLoadingCache<String, PaymentEntity> cache;
+
+    public PaymentCache(PaymentStore paymentStore,
+                        PaymentMetrics paymentMetrics,
+                        @Value("${payment.cache.max-size:100000}") long maxSize,
+                        @Value("${payment.cache.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync((id, executor) -> paymentStore.findPaymentById(UUID.fromString(id)).toFuture());
+        paymentMetrics.bindCache(cache, "payments.by-id");
+    }
+
+    /**
+     * Получить платеж; отсутствующие в БД платежи не кэшируются
+     */
+    public Mono<PaymentEntity> get(String id) {
+        // suppressCancel: отмена одного подписчика не отменяет общую загрузку
+        return Mono.fromFuture(() -> cache.get(id), true);
+    }
+
+    /**
+     * Положить только что сохраненный платеж
+     */
+    public void put(PaymentEntity entity) {
+        cache.put(entity.getId().toString(), CompletableFuture.completedFuture(entity));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.payment.service;
+
+import com.example.payment.entity.PaymentEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Живая лента сохраненных платежей. Каждый платеж публикуется один раз в общий sink
+ * и раздается всем подписчикам, поэтому N открытых дашбордов стоят одной публикации, а не N запросов к БД.
+ * Sink хранит последние replay-size событий не старше replay-window: по ним подписчик,
+ * переподключившийся с Last-Event-ID, получает пропущенное. У каждого подписчика свой буфер
+ * на buffer-size событий; при переполнении медленного подписчика действует overflow:
+ * drop-oldest / drop-latest - выбросить событие, disconnect - оборвать поток (клиент переподключится и догонит по replay)
+ */
+@Slf4j
+@Component
+public class PaymentFeed {
+
+    /**
+     * Событие ленты; id вида "<запуск>-<номер>", номера растут в пределах одного запуска сервиса
+     */
+    public record FeedEvent(String id, long sequence, PaymentEntity payment) {
+    }
+
+    public enum Overflow { DROP_OLDEST, DROP_LATEST, DISCONNECT }
+
+    private final Sinks.Many<FeedEvent> sink;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final int bufferSize;
+    private final Overflow overflow;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter publishedCounter;
+    private final Counter droppedCounter;
+    private long sequence;
+
+    public PaymentFeed(MeterRegistry meterRegistry,
+                       @Value("${payment.feed.replay-size:1000}") int replaySize,
+                       @Value("${payment.feed.replay-window:60s}") Duration replayWindow,
+                       @Value("${payment.feed.buffer-size:256}") int bufferSize,
+                       @Value("${payment.feed.overflow:drop-oldest}") String overflow) {
+        this.sink = Sinks.many().replay().limit(replaySize, replayWindow);
+        this.bufferSize = bufferSize;
+        this.overflow = Overflow.valueOf(overflow.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+
+        Gauge.builder("payment.feed.subscribers", subscribers, AtomicInteger::get)
+                .description("Clients currently subscribed to the live payment feed")
+                .register(meterRegistry);
+        publishedCounter = Counter.builder("payment.feed.published")
+                .description("Payments published to the live feed")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("payment.feed.dropped")
+                .description("Feed events dropped because a subscriber buffer overflowed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Опубликовать сохраненный платеж. Публикации сериализуются: sink требует
+     * последовательных вызовов, а номера событий должны идти в порядке выдачи
+     */
+    public synchronized void publish(PaymentEntity payment) {
+        long next = ++sequence;
+        Sinks.EmitResult result = sink.tryEmitNext(new FeedEvent(epoch + "-" + next, next, payment));
+        if (result.isSuccess()) {
+            publishedCounter.increment();
+        } else {
+            log.warn("Failed to publish payment {} to the live feed: {}", payment.getId(), result);
+        }
+    }
+
+    /**
+     * Подписка на ленту. lastEventId из того же запуска - дослать события после него,
+     * пока они в окне replay; иначе (или если null) - только новые события
+     */
+    public Flux<FeedEvent> subscribe(String lastEventId) {
+        return Flux.defer(() -> {
+            long after = resumeAfter(lastEventId);
+            Flux<FeedEvent> events = sink.asFlux()
+                    .skipWhile(event -> event.sequence() <= after);
+            return withBuffer(events)
+                    .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                    .doFinally(signal -> subscribers.decrementAndGet());
+        });
+    }
+
+    private long resumeAfter(String lastEventId) {
+        long current;
+        synchronized (this) {
+            current = sequence;
+        }
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return current;
+        }
+        try {
+            long requested = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+            return Math.min(requested, current);
+        } catch (NumberFormatException e) {
+            return current;
+        }
+    }
+
+    private Flux<FeedEvent> withBuffer(Flux<FeedEvent> events) {
+        return switch (overflow) {
+            case DROP_OLDEST -> events.onBackpressureBuffer(bufferSize,
+                    event -> droppedCounter.increment(), BufferOverflowStrategy.DROP_OLDEST);
+            case DROP_LATEST -> events.onBackpressureBuffer(bufferSize,
+                    event -> droppedCounter.increment(), BufferOverflowStrategy.DROP_LATEST);
+            case DISCONNECT -> events.onBackpressureBuffer(bufferSize,
+                            event -> droppedCounter.increment(), BufferOverflowStrategy.ERROR)
+                    .onErrorResume(Exceptions::isOverflow, error -> {
+                        log.debug("Live feed subscriber disconnected: buffer of {} events overflowed", bufferSize);
+                        return Flux.empty();
+                    });
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.payment.service;
+
+import com.example.payment.repository.PaymentPartitionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Обслуживание секций payments: заранее создает секции на ближайшие дни
+ * и отсоединяет или удаляет секции старше retention
+ */
+@Slf4j
+@Component
+public class PaymentPartitionMaintenance {
+
+    /**
+     * Что делать с секцией старше retention
+     */
+    public enum RetentionMode {
+        DETACH,     // отсоединить: таблица остается для архивации
+        DROP        // удалить вместе с данными
+    }
+
+    // Нижняя граница, когда секции не истекают
+    private static final LocalDateTime UNBOUNDED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final PaymentPartitionRepository paymentPartitionRepository;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int daysAhead;
+    private final Duration retention;
+    private final RetentionMode retentionMode;
+    private Disposable schedule;
+
+    public PaymentPartitionMaintenance(PaymentPartitionRepository paymentPartitionRepository,
+                                       @Value("${payment.partitions.enabled:true}") boolean enabled,
+                                       @Value("${payment.partitions.maintenance-interval:1h}") Duration interval,
+                                       @Value("${payment.partitions.days-ahead:7}") int daysAhead,
+                                       @Value("${payment.partitions.retention:90d}") Duration retention,
+                                       @Value("${payment.partitions.retention-mode:detach}") RetentionMode retentionMode) {
+        this.paymentPartitionRepository = paymentPartitionRepository;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.daysAhead = daysAhead;
+        this.retention = retention;
+        this.retentionMode = retentionMode;
+    }
+
+    /**
+     * Самый ранний created_at, который еще хранится в payments: границу maintain() отсекают и запросы
+     * без других ограничений по времени, чтобы не читать секции, ждущие отсоединения
+     */
+    public LocalDateTime retainedSince() {
+        return enabled ? LocalDate.now().minusDays(retention.toDays()).atStartOfDay() : UNBOUNDED;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        schedule = Flux.interval(Duration.ZERO, interval)
+                .concatMap(tick -> maintain()
+                        .onErrorResume(error -> {
+                            log.error("Error maintaining payments partitions", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    Mono<Void> maintain() {
+        LocalDate today = LocalDate.now();
+        // Со вчерашнего дня: created_at из внешнего сервиса может немного отставать
+        return paymentPartitionRepository.ensurePartitions(today.minusDays(1), daysAhead + 1)
+                .doOnNext(created -> {
+                    if (created > 0) {
+                        log.info("Created {} payments partitions", created);
+                    }
+                })
+                .then(paymentPartitionRepository.expirePartitions(
+                        today.minusDays(retention.toDays()), retentionMode == RetentionMode.DETACH))
+                .doOnNext(expired -> {
+                    if (expired > 0) {
+                        log.info("Expired {} payments partitions ({})", expired, retentionMode);
+                    }
+                })
+                .then();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.payment.service;
+
+import com.example.payment.entity.PaymentEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Обновление структур в памяти, которые обслуживают чтение, после успешной вставки платежа
+ * и публикация в живую ленту. Вызывается всеми путями записи: одиночным, пакетным и отложенной записью
+ */
+@Component
+@RequiredArgsConstructor
+public class PaymentReadModels {
+
+    private final PaymentCache paymentCache;
+    private final LatestPaymentsBuffer latestPaymentsBuffer;
+    private final PaymentAggregates paymentAggregates;
+    private final PayerSummaryCache payerSummaryCache;
+    private final PaymentFeed paymentFeed;
+
+    public void onInserted(PaymentEntity entity) {
+        paymentCache.put(entity);
+        latestPaymentsBuffer.add(entity);
+        paymentAggregates.add(entity);
+        payerSummaryCache.invalidate(entity.getPayerEmail());
+        paymentFeed.publish(entity);
+    }
+}
@@ -1,18 +1,38 @@
 package com.example.payment.service;
 
+import com.example.payment.dto.PayerPaymentsPageDto;
 import com.example.payment.dto.PaymentDto;
+import com.example.payment.dto.PaymentPageDto;
+import com.example.payment.dto.PaymentSearchPageDto;
+import com.example.payment.dto.PaymentStatsDto;
 import com.example.payment.entity.PaymentEntity;
+import com.example.payment.ingest.WriteBehindIngestQueue;
 import com.example.payment.metrics.PaymentMetrics;
+import com.example.payment.repository.PaymentBatchRepository;
 import com.example.payment.repository.PaymentRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.payment.repository.PaymentSearchCriteria;
+import com.example.payment.repository.PaymentSearchRepository;
+import com.example.payment.repository.PaymentStorageFormat;
+import com.example.payment.repository.PaymentStore;
+import com.example.payment.repository.PaymentStreamRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -20,19 +40,64 @@ import java.math.BigDecimal;
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
+    private final PaymentStore paymentStore;
+    private final PaymentStreamRepository paymentStreamRepository;
+    private final PaymentSearchRepository paymentSearchRepository;
+    private final PaymentStorageFormat storageFormat;
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
     private final PaymentMetrics paymentMetrics;
+    private final RecentTransactionIds recentTransactionIds;
+    private final PaymentCache paymentCache;
+    private final LatestPaymentsBuffer latestPaymentsBuffer;
+    private final WriteBehindIngestQueue writeBehindIngestQueue;
+    private final HedgedRequests hedgedRequests;
+    private final PaymentAggregates paymentAggregates;
+    private final PaymentReadModels paymentReadModels;
+    private final PayerSummaryCache payerSummaryCache;
+    private final PaymentPartitionMaintenance partitionMaintenance;
 
     @Value("${mock.service.url}")
     private String mockServiceUrl;
 
+    @Value("${payment.batch.max-size:200}")
+    private int batchMaxSize;
+
+    @Value("${payment.batch.max-wait:50ms}")
+    private Duration batchMaxWait;
+
+    @Value("${payment.batch.fetch-concurrency:64}")
+    private int batchFetchConcurrency;
+
+    @Value("${payment.batch.write-concurrency:4}")
+    private int batchWriteConcurrency;
+
+    @Value("${payment.batch.upstream-stream:false}")
+    private boolean batchUpstreamStream;
+
+    @Value("${payment.batch.upstream-chunk:500}")
+    private int batchUpstreamChunk;
+
+    @Value("${payment.export.fetch-size:500}")
+    private int exportFetchSize;
+
     /**
      * Получить платеж из внешнего сервиса и сохранить в БД
      * Асинхронный подход: параллельное выполнение HTTP-запроса и операции БД
      */
     public Mono<PaymentEntity> fetchAndSavePayment() {
-        return fetchPaymentFromMockService()
+        return fetchAndSave(fetchPaymentFromMockService());
+    }
+
+    /**
+     * То же, что fetchAndSavePayment, но ошибка upstream не превращается в пустой Mono, а доходит
+     * до подписчика: IngestionPoller считает ее отказом и не принимает быстрый ответ за хорошую задержку
+     */
+    public Mono<PaymentEntity> pollPayment() {
+        return fetchAndSave(requestPaymentFromMockService());
+    }
+
+    private Mono<PaymentEntity> fetchAndSave(Mono<PaymentDto> source) {
+        return paymentMetrics.timeStage(PaymentMetrics.Stage.TOTAL, source
                 .doOnNext(dto -> {
                     log.debug("Fetched payment from mock service: {}", dto.getTransactionId());
                     paymentMetrics.incrementMockPaymentRequests();
@@ -41,86 +106,307 @@ public class PaymentService {
                 .doOnNext(payment -> {
                     log.debug("Payment saved: {}", payment.getTransactionId());
                     paymentMetrics.incrementPaymentSaves();
-                });
+                }));
     }
 
     /**
-     * Асинхронный запрос к внешнему сервису
+     * Получить платеж из внешнего сервиса и поставить в очередь отложенной записи.
+     * Mono завершается, как только платеж записан в журнал; в БД его пишет фоновый поток.
+     * Дубликат - пустой Mono, ошибка upstream доходит до подписчика
      */
-    private Mono<PaymentDto> fetchPaymentFromMockService() {
-        return webClient.get()
-                .uri(mockServiceUrl + "/api/mock/payment")
-                .retrieve()
-                .bodyToMono(String.class)
-                .flatMap(json -> {
-                    try {
-                        PaymentDto dto = objectMapper.readValue(json, PaymentDto.class);
-                        return Mono.just(dto);
-                    } catch (Exception e) {
-                        log.error("Error parsing payment JSON: {}", json, e);
-                        return Mono.error(e);
-                    }
+    public Mono<PaymentEntity> fetchAndEnqueuePayment() {
+        return requestPaymentFromMockService()
+                .doOnNext(dto -> paymentMetrics.incrementMockPaymentRequests())
+                .map(dto -> {
+                    PaymentEntity entity = convertToEntity(dto);
+                    entity.markAsNew();
+                    return entity;
                 })
+                .filter(this::markSeen)
+                .flatMap(entity -> writeBehindIngestQueue.enqueue(entity)
+                        .doOnError(error -> recentTransactionIds.forget(entity.getTransactionId())));
+    }
+
+    /**
+     * Получить count платежей из внешнего сервиса и сохранить их пачками.
+     * Запросы к заглушке идут параллельно, результаты группируются по размеру
+     * или по времени и пишутся одним multi-row INSERT на пачку
+     */
+    public Flux<PaymentEntity> fetchAndSavePayments(int count) {
+        return fetchPaymentsForBatch(count)
+                .doOnNext(dto -> paymentMetrics.incrementMockPaymentRequests())
+                .map(PaymentService::convertToEntity)
+                .filter(this::markSeen)
+                .bufferTimeout(Math.min(batchMaxSize, PaymentBatchRepository.MAX_ROWS_PER_STATEMENT), batchMaxWait)
+                .flatMap(this::saveBatch, batchWriteConcurrency)
+                .doOnNext(payment -> paymentMetrics.incrementPaymentSaves());
+    }
+
+    private Mono<PaymentDto> fetchPaymentFromMockService() {
+        return requestPaymentFromMockService()
                 .doOnError(error -> log.error("Error fetching payment from mock service", error))
                 .onErrorResume(error -> Mono.empty()); // Возвращаем пустой Mono при ошибке
     }
 
     /**
-     * Асинхронное сохранение платежа в БД
+     * Асинхронный запрос к внешнему сервису.
+     * Тело декодируется Jackson-декодером прямо из DataBuffer, без промежуточной строки.
+     * Медленный ответ может быть продублирован хеджированным запросом (mock.client.hedging).
+     * Ошибку логирует вызывающий: IngestionPoller при недоступной заглушке не пишет стек на каждую попытку
+     */
+    private Mono<PaymentDto> requestPaymentFromMockService() {
+        return paymentMetrics.timeStage(PaymentMetrics.Stage.FETCH, hedgedRequests.execute(() -> webClient.get()
+                        .uri(mockServiceUrl + "/api/mock/payment")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .retrieve()
+                        .bodyToMono(PaymentDto.class)))
+                .doOnError(paymentMetrics::incrementUpstreamErrors);
+    }
+
+    /**
+     * Запрос count платежей одним NDJSON-ответом.
+     * Платежи декодируются по мере поступления строк, ответ целиком не буферизуется
+     */
+    private Flux<PaymentDto> fetchPaymentsFromMockService(int count) {
+        return paymentMetrics.timeStage(PaymentMetrics.Stage.FETCH_STREAM, webClient.get()
+                        .uri(mockServiceUrl + "/api/mock/payments/stream?count={count}", count)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .retrieve()
+                        .bodyToFlux(PaymentDto.class))
+                .doOnError(error -> {
+                    log.error("Error streaming payments from mock service", error);
+                    paymentMetrics.incrementUpstreamErrors(error);
+                })
+                .onErrorResume(error -> Flux.empty());
+    }
+
+    /**
+     * Источник платежей для пакетной загрузки: NDJSON-поток порциями или одиночные запросы
+     */
+    private Flux<PaymentDto> fetchPaymentsForBatch(int count) {
+        if (!batchUpstreamStream) {
+            return Flux.range(0, count)
+                    .flatMap(i -> fetchPaymentFromMockService(), batchFetchConcurrency);
+        }
+        int chunks = (count + batchUpstreamChunk - 1) / batchUpstreamChunk;
+        return Flux.range(0, chunks)
+                .flatMap(chunk -> fetchPaymentsFromMockService(
+                        Math.min(batchUpstreamChunk, count - chunk * batchUpstreamChunk)), batchFetchConcurrency);
+    }
+
+    /**
+     * Асинхронное сохранение платежа в БД.
+     * Повторы отсекаются фильтром в памяти, остальные - уникальным индексом
+     * через ON CONFLICT DO NOTHING, без отдельного запроса на проверку
      */
     private Mono<PaymentEntity> savePayment(PaymentDto dto) {
-        return paymentRepository.existsByTransactionId(dto.getTransactionId())
-                .flatMap(exists -> {
-                    if (exists) {
-                        log.info("Payment with transactionId {} already exists", dto.getTransactionId());
-                        return Mono.empty(); // Пропускаем дубликаты
+        PaymentEntity entity = convertToEntity(dto);
+        entity.markAsNew();
+
+        if (!markSeen(entity)) {
+            return Mono.empty(); // Пропускаем дубликаты
+        }
+
+        return paymentStore.insertAll(List.of(entity))
+                .next()
+                .map(id -> entity)
+                .doOnNext(paymentReadModels::onInserted)
+                .switchIfEmpty(Mono.fromRunnable(() -> {
+                    log.info("Payment with transactionId {} already exists", entity.getTransactionId());
+                    paymentMetrics.incrementDedupDbConflicts(1);
+                }))
+                .doOnNext(saved ->
+                        log.debug("Payment saved successfully: {}", saved.getTransactionId())
+                )
+                .doOnError(error -> {
+                    log.error("Error saving payment: {}", entity.getTransactionId(), error);
+                    recentTransactionIds.forget(entity.getTransactionId());
+                });
+    }
+
+    /**
+     * Сохранение пачки одним INSERT ... ON CONFLICT DO NOTHING RETURNING id
+     */
+    private Flux<PaymentEntity> saveBatch(List<PaymentEntity> batch) {
+        return paymentStore.insertAll(batch)
+                .collect(Collectors.toSet())
+                .flatMapMany(insertedIds -> {
+                    int conflicts = batch.size() - insertedIds.size();
+                    if (conflicts > 0) {
+                        log.info("{} payments of batch already exist", conflicts);
+                        paymentMetrics.incrementDedupDbConflicts(conflicts);
                     }
+                    log.debug("Batch of {} payments saved", insertedIds.size());
+                    return Flux.fromIterable(batch)
+                            .filter(entity -> insertedIds.contains(entity.getId()))
+                            .doOnNext(paymentReadModels::onInserted);
+                })
+                .doOnError(error -> {
+                    log.error("Error saving batch of {} payments", batch.size(), error);
+                    batch.forEach(entity -> recentTransactionIds.forget(entity.getTransactionId()));
+                });
+    }
 
-                    PaymentEntity entity = convertToEntity(dto);
-                    entity.markAsNew();
+    /**
+     * Проверка по фильтру недавно виденных transactionId
+     */
+    private boolean markSeen(PaymentEntity entity) {
+        long start = System.nanoTime();
+        boolean firstSeen = recentTransactionIds.markSeen(entity.getTransactionId());
+        paymentMetrics.recordStage(PaymentMetrics.Stage.DEDUP, System.nanoTime() - start);
+        if (firstSeen) {
+            return true;
+        }
+        log.info("Payment with transactionId {} already seen", entity.getTransactionId());
+        paymentMetrics.incrementDedupFilterHits();
+        return false;
+    }
+
+    /**
+     * Получить последние платежи: из буфера в памяти, если он вмещает limit, иначе из БД
+     */
+    public Flux<PaymentEntity> getLatestPayments(int limit) {
+        if (latestPaymentsBuffer.canServe(limit)) {
+            return Flux.defer(() -> Flux.fromIterable(latestPaymentsBuffer.latest(limit)));
+        }
+        return paymentStore.findLatestPayments(limit);
+    }
 
-                    return paymentRepository.save(entity)
-                            .doOnSuccess(saved ->
-                                    log.debug("Payment saved successfully: {}", saved.getTransactionId())
-                            )
-                            .doOnError(error ->
-                                    log.error("Error saving payment: {}", dto.getTransactionId(), error)
-                            );
+    /**
+     * Страница платежей по курсору, от новых к старым.
+     * Стоимость любой страницы одинакова: поиск по индексу (created_at DESC, id DESC)
+     */
+    public Mono<PaymentPageDto> getPaymentsPage(int limit, String cursor) {
+        // Запрашиваем на одну строку больше, чтобы понять, есть ли следующая страница
+        Flux<PaymentEntity> rows = cursor == null || cursor.isBlank()
+                ? paymentStore.findLatestPayments(limit + 1)
+                : Mono.fromCallable(() -> PaymentCursor.decode(cursor))
+                        .flatMapMany(position -> paymentStore.findLatestPaymentsBefore(
+                                position.createdAt(), position.id(), limit + 1));
+        return toPage(rows, limit);
+    }
+
+    /**
+     * Страница платежей плательщика по курсору, от новых к старым,
+     * по индексу (payer_email, created_at DESC, id DESC); сводка - из кэша, если запрошена
+     */
+    public Mono<PayerPaymentsPageDto> getPayerPaymentsPage(String payerEmail, int limit, String cursor,
+                                                           boolean withSummary) {
+        LocalDateTime since = partitionMaintenance.retainedSince();
+        Flux<PaymentEntity> rows = cursor == null || cursor.isBlank()
+                ? paymentRepository.findPayerPayments(payerEmail, since, limit + 1)
+                : Mono.fromCallable(() -> PaymentCursor.decode(cursor))
+                        .flatMapMany(position -> paymentRepository.findPayerPaymentsBefore(
+                                payerEmail, since, position.createdAt(), position.id(), limit + 1));
+        Mono<PaymentPageDto> page = toPage(rows, limit);
+        if (!withSummary) {
+            return page.map(result -> new PayerPaymentsPageDto(result.getItems(), result.getNextCursor(), null));
+        }
+        return page.zipWith(payerSummaryCache.get(payerEmail), (result, summary) ->
+                new PayerPaymentsPageDto(result.getItems(), result.getNextCursor(), summary));
+    }
+
+    /**
+     * Страница платежей в статусе по курсору, от новых к старым,
+     * по индексу (status, created_at DESC, id DESC)
+     */
+    public Mono<PaymentPageDto> getStatusPaymentsPage(String status, int limit, String cursor) {
+        Flux<PaymentEntity> rows = Flux.defer(() -> {
+            Object storedStatus = storageFormat.status(status);
+            LocalDateTime since = partitionMaintenance.retainedSince();
+            return cursor == null || cursor.isBlank()
+                    ? paymentRepository.findStatusPayments(storedStatus, since, limit + 1)
+                    : Mono.fromCallable(() -> PaymentCursor.decode(cursor))
+                            .flatMapMany(position -> paymentRepository.findStatusPaymentsBefore(
+                                    storedStatus, since, position.createdAt(), position.id(), limit + 1));
+        });
+        return toPage(rows, limit);
+    }
+
+    /**
+     * Поиск платежей по фильтрам с keyset-пагинацией.
+     * fields - поля ответа (пусто - все), читаются только соответствующие колонки;
+     * неизвестное поле или некорректный курсор - IllegalArgumentException
+     */
+    public Mono<PaymentSearchPageDto> searchPayments(PaymentSearchCriteria criteria, List<String> fields,
+                                                     int limit, String cursor) {
+        List<PaymentSearchRepository.Field> selected = new ArrayList<>(fields.size());
+        for (String name : fields) {
+            PaymentSearchRepository.Field field = PaymentSearchRepository.FIELDS.get(name);
+            if (field == null) {
+                return Mono.error(new IllegalArgumentException("Unknown field: " + name));
+            }
+            selected.add(field);
+        }
+        List<PaymentSearchRepository.Field> responseFields = selected.isEmpty()
+                ? List.copyOf(PaymentSearchRepository.FIELDS.values())
+                : selected;
+        List<String> columns = selected.stream().map(PaymentSearchRepository.Field::column).toList();
+
+        // defer: неизвестная валюта или статус в компактной схеме приходит ошибкой в Mono, а не исключением
+        Flux<PaymentEntity> rows = Flux.defer(() -> cursor == null || cursor.isBlank()
+                ? paymentSearchRepository.search(criteria, null, null, columns, limit + 1)
+                : Mono.fromCallable(() -> PaymentCursor.decode(cursor))
+                        .flatMapMany(position -> paymentSearchRepository.search(
+                                criteria, position.createdAt(), position.id(), columns, limit + 1)));
+
+        return paymentMetrics.timeSearch(criteria.shape(), toPage(rows, limit))
+                .map(page -> {
+                    List<Map<String, Object>> items = new ArrayList<>(page.getItems().size());
+                    for (PaymentEntity entity : page.getItems()) {
+                        Map<String, Object> item = new LinkedHashMap<>();
+                        responseFields.forEach(field -> item.put(field.name(), field.getter().apply(entity)));
+                        items.add(item);
+                    }
+                    return new PaymentSearchPageDto(items, page.getNextCursor());
                 });
     }
 
     /**
-     * Получить последние платежи из БД
+     * Собрать страницу из limit + 1 строк: лишняя строка означает, что есть следующая страница
      */
-    public Mono<PaymentEntity> getLatestPayments(int limit) {
-        return paymentRepository.findLatestPayments(limit)
-                .collectList()
-                .flatMap(list -> {
-                    if (list.isEmpty()) {
-                        return Mono.empty();
+    private static Mono<PaymentPageDto> toPage(Flux<PaymentEntity> rows, int limit) {
+        return rows.collectList()
+                .map(page -> {
+                    if (page.size() <= limit) {
+                        return new PaymentPageDto(page, null);
                     }
-                    return Mono.just(list.get(0)); // Возвращаем первый элемент для примера
+                    List<PaymentEntity> items = page.subList(0, limit);
+                    return new PaymentPageDto(items, PaymentCursor.of(items.get(limit - 1)).encode());
                 });
     }
 
     /**
-     * Получить все платежи (для контроллера)
+     * Получить все платежи (для контроллера).
+     * Читаются через курсор БД порциями по exportFetchSize с учетом backpressure
+     */
+    public Flux<PaymentEntity> getAllPayments() {
+        return paymentStreamRepository.streamAll(exportFetchSize);
+    }
+
+    /**
+     * Количество и сумма платежей по валюте и статусу в корзинах unit за [from, to).
+     * Считается по агрегатам в памяти, таблица payments не читается
      */
-    public reactor.core.publisher.Flux<PaymentEntity> getAllPayments() {
-        return paymentRepository.findAll();
+    public Mono<List<PaymentStatsDto>> getStats(LocalDateTime from, LocalDateTime to, ChronoUnit unit,
+                                                String currency, String status) {
+        if (!paymentAggregates.isReady()) {
+            return Mono.error(new IllegalStateException("Payment aggregates are not restored yet"));
+        }
+        return Mono.fromSupplier(() -> paymentAggregates.query(from, to, unit, currency, status));
     }
 
     /**
-     * Получить платеж по ID
+     * Получить платеж по ID (через кэш)
      */
     public Mono<PaymentEntity> getPaymentById(String id) {
-        return paymentRepository.findById(java.util.UUID.fromString(id));
+        return paymentCache.get(id);
     }
 
     /**
      * Конвертация DTO в Entity
      */
-    private PaymentEntity convertToEntity(PaymentDto dto) {
+    public static PaymentEntity convertToEntity(PaymentDto dto) {
         return PaymentEntity.builder()
                 .id(dto.getId() != null ? dto.getId() : java.util.UUID.randomUUID())
                 .amount(dto.getAmount() != null ? dto.getAmount() : BigDecimal.ZERO)
@@ -0,0 +1,116 @@
+package com.example.payment.service;
+
+import com.example.payment.dto.PaymentDto;
+import com.example.payment.repository.PaymentStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Прогрев JIT перед тем, как сервис объявит готовность (readiness = ACCEPTING_TRAFFIC).
+ * Spring Boot публикует готовность после всех обработчиков ApplicationReadyEvent, поэтому
+ * пока этот обработчик выполняется, /actuator/health/readiness отвечает OUT_OF_SERVICE и трафик не приходит.
+ * Прогреваются путь загрузки (запрос к заглушке, декодирование, INSERT активного PaymentStore
+ * в транзакции с откатом - данные не меняются) и путь чтения (HTTP-запросы к собственным эндпоинтам
+ * через фильтры, контроллер и кодеки).
+ * Ошибки прогрева не мешают старту, прогрев ограничен timeout
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "payment.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class PaymentWarmUp {
+
+    private final WebClient webClient;
+    private final PaymentStore paymentStore;
+    private final String mockServiceUrl;
+    private final int iterations;
+    private final int concurrency;
+    private final Duration timeout;
+
+    public PaymentWarmUp(WebClient webClient,
+                         PaymentStore paymentStore,
+                         @Value("${mock.service.url}") String mockServiceUrl,
+                         @Value("${payment.warmup.iterations:50}") int iterations,
+                         @Value("${payment.warmup.concurrency:4}") int concurrency,
+                         @Value("${payment.warmup.timeout:20s}") Duration timeout) {
+        this.webClient = webClient;
+        this.paymentStore = paymentStore;
+        this.mockServiceUrl = mockServiceUrl;
+        this.iterations = iterations;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Блокирует публикацию готовности: она идет после всех обработчиков ApplicationReadyEvent,
+     * так что порядок среди них не важен. Обработчики, запущенные раньше (например, IngestionPoller
+     * с start-on-startup), работают параллельно с прогревом
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp(ApplicationReadyEvent event) {
+        String selfUrl = "http://localhost:" + event.getApplicationContext().getEnvironment()
+                .getProperty("local.server.port", "8080") + "/api/payments";
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            Flux.range(0, iterations)
+                    .flatMap(i -> Mono.when(
+                            ingestOnce().onErrorResume(error -> countFailure(failures, error)),
+                            readOnce(selfUrl).onErrorResume(error -> countFailure(failures, error))), concurrency)
+                    .then()
+                    .block(timeout);
+            log.info("Warm-up finished: {} iterations in {} ms, {} failed calls", iterations,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures.get());
+        } catch (RuntimeException e) {
+            log.warn("Warm-up stopped after {} ms: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), e.getMessage());
+        }
+    }
+
+    /**
+     * Заглушка -> PaymentDto -> PaymentEntity -> INSERT через PaymentStore (R2DBC или JDBC); транзакция откатывается
+     */
+    private Mono<Void> ingestOnce() {
+        return webClient.get()
+                .uri(mockServiceUrl + "/api/mock/payment")
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(PaymentDto.class)
+                .map(PaymentService::convertToEntity)
+                .flatMap(entity -> paymentStore.warmUpInsert(List.of(entity)));
+    }
+
+    private Mono<Void> readOnce(String selfUrl) {
+        return Mono.when(
+                get(selfUrl + "?limit=10"),
+                get(selfUrl + "/page?limit=50"),
+                get(selfUrl + "/status/COMPLETED?limit=20"));
+    }
+
+    private Mono<Void> get(String url) {
+        return webClient.get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    private static Mono<Void> countFailure(AtomicInteger failures, Throwable error) {
+        failures.incrementAndGet();
+        log.debug("Warm-up call failed", error);
+        return Mono.empty();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.payment.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченное множество недавно виденных transactionId.
+ * Точное (без ложных срабатываний), вытеснение FIFO через кольцевой буфер.
+ * Отсекает очевидные повторы без запроса в БД, окончательную проверку делает уникальный индекс.
+ * Слот кольца хранит саму отметку: при вытеснении удаляется только она, а не повторная отметка
+ * того же id, сделанная после forget
+ */
+@Component
+public class RecentTransactionIds {
+
+    // Сравнивается по ссылке: две отметки одного id - разные записи
+    private static final class Entry {
+        final String transactionId;
+
+        Entry(String transactionId) {
+            this.transactionId = transactionId;
+        }
+    }
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Entry> seen;
+    private final AtomicReferenceArray<Entry> ring;
+    private final AtomicLong cursor = new AtomicLong();
+
+    public RecentTransactionIds(@Value("${payment.dedup.recent-capacity:100000}") int capacity,
+                                MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        this.seen = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.ring = new AtomicReferenceArray<>(capacity);
+
+        Gauge.builder("payment.dedup.filter.size", this, RecentTransactionIds::size)
+                .description("Number of transaction IDs held by the in-memory dedup filter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Отметить transactionId как виденный.
+     * Возвращает false, если он уже есть в множестве (повтор)
+     */
+    public boolean markSeen(String transactionId) {
+        Entry entry = new Entry(transactionId);
+        if (seen.putIfAbsent(transactionId, entry) != null) {
+            return false;
+        }
+        int slot = (int) (cursor.getAndIncrement() % capacity);
+        Entry evicted = ring.getAndSet(slot, entry);
+        if (evicted != null) {
+            seen.remove(evicted.transactionId, evicted);
+        }
+        return true;
+    }
+
+    /**
+     * Забыть transactionId (например, если вставка в БД не удалась)
+     */
+    public void forget(String transactionId) {
+        seen.remove(transactionId);
+    }
+
+    public int size() {
+        return seen.size();
+    }
+}
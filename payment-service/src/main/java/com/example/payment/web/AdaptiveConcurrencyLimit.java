@@ -0,0 +1,124 @@
+package com.example.payment.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Адаптивный лимит одновременных запросов группы эндпоинтов (по схеме TCP Vegas).
+ * По минимальной наблюдаемой задержке оценивается, сколько запросов стоит в очереди
+ * (limit * (1 - minRtt / rtt)): пока очередь меньше alpha, лимит растет, больше beta - снижается.
+ * Ошибка 5xx или таймаут снижают лимит сразу в backoffRatio раз
+ */
+final class AdaptiveConcurrencyLimit {
+
+    // Через сколько замеров минимальная задержка пересчитывается заново
+    private static final int MIN_RTT_RESET_SAMPLES = 5000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+
+    private volatile double limit;
+    private volatile long minRtt = Long.MAX_VALUE;
+    private long lastDecrease;
+    private int samples;
+
+    AdaptiveConcurrencyLimit(String group, int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                             MeterRegistry meterRegistry) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        Gauge.builder("payment.limiter.limit", this, limiter -> limiter.limit)
+                .description("Current adaptive concurrency limit of an endpoint group")
+                .tag("group", group)
+                .register(meterRegistry);
+        Gauge.builder("payment.limiter.inflight", inFlight, AtomicInteger::get)
+                .description("Requests of an endpoint group currently being processed")
+                .tag("group", group)
+                .register(meterRegistry);
+        Gauge.builder("payment.limiter.min.rtt", this,
+                        limiter -> limiter.minRtt == Long.MAX_VALUE ? Double.NaN : limiter.minRtt / 1_000_000.0)
+                .description("No-load latency estimate of an endpoint group, ms")
+                .tag("group", group)
+                .register(meterRegistry);
+        acceptedCounter = Counter.builder("payment.limiter.accepted")
+                .description("Requests admitted by the concurrency limiter")
+                .tag("group", group)
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("payment.limiter.rejected")
+                .description("Requests rejected with 503 because the concurrency limit was reached")
+                .tag("group", group)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Занять место; false - лимит исчерпан, запрос нужно отклонить
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejectedCounter.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                acceptedCounter.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освободить место без замера (клиент отменил запрос)
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Освободить место и учесть время обработки запроса
+     */
+    void release(long rtt, boolean overloaded) {
+        int current = inFlight.getAndDecrement();
+        adjust(rtt, current, overloaded);
+    }
+
+    private synchronized void adjust(long rtt, int inFlightAtCompletion, boolean overloaded) {
+        if (++samples % MIN_RTT_RESET_SAMPLES == 0) {
+            minRtt = rtt; // Даем базовой задержке подстроиться под изменившуюся БД или upstream
+        }
+        minRtt = Math.min(minRtt, rtt);
+
+        long now = System.nanoTime();
+        double current = limit;
+        if (overloaded) {
+            // Не чаще одного снижения за время ответа, чтобы пачка таймаутов не обнулила лимит
+            if (now - lastDecrease > rtt) {
+                limit = Math.max(minLimit, current * backoffRatio);
+                lastDecrease = now;
+            }
+            return;
+        }
+        if (inFlightAtCompletion * 2 < current) {
+            return; // Нагрузка ниже половины лимита - задержка ничего не говорит о запасе
+        }
+        double queue = current * (1 - (double) minRtt / rtt);
+        double step = Math.max(1.0, Math.log10(current));
+        if (queue <= step) {
+            limit = Math.min(maxLimit, current + 6 * step);
+        } else if (queue < 3 * step) {
+            limit = Math.min(maxLimit, current + step);
+        } else if (queue > 6 * step) {
+            limit = Math.max(minLimit, current - step);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.payment.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Адаптивное ограничение параллелизма на /api/payments с отдельными лимитами для записи (POST)
+ * и чтения (GET). Сверх лимита запрос сразу получает 503 с Retry-After, а не ждет в очереди
+ * пула R2DBC (max-acquire-time) вместе с остальными.
+ * Потоковая выгрузка /all и живая лента /feed не ограничиваются: их длительность определяется
+ * объемом или временем подписки, а не нагрузкой
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "payment.limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitFilter implements WebFilter {
+
+    private static final String PAYMENTS_PATH = "/api/payments";
+    private static final String EXPORT_PATH = "/api/payments/all";
+    private static final String FEED_PATH = "/api/payments/feed";
+
+    private final AdaptiveConcurrencyLimit writeLimit;
+    private final AdaptiveConcurrencyLimit readLimit;
+    private final String retryAfter;
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${payment.limiter.write.initial-limit:32}") int writeInitialLimit,
+                                  @Value("${payment.limiter.write.min-limit:4}") int writeMinLimit,
+                                  @Value("${payment.limiter.write.max-limit:256}") int writeMaxLimit,
+                                  @Value("${payment.limiter.read.initial-limit:64}") int readInitialLimit,
+                                  @Value("${payment.limiter.read.min-limit:8}") int readMinLimit,
+                                  @Value("${payment.limiter.read.max-limit:1024}") int readMaxLimit,
+                                  @Value("${payment.limiter.backoff-ratio:0.9}") double backoffRatio,
+                                  @Value("${payment.limiter.retry-after:1s}") Duration retryAfter) {
+        this.writeLimit = new AdaptiveConcurrencyLimit("write",
+                writeInitialLimit, writeMinLimit, writeMaxLimit, backoffRatio, meterRegistry);
+        this.readLimit = new AdaptiveConcurrencyLimit("read",
+                readInitialLimit, readMinLimit, readMaxLimit, backoffRatio, meterRegistry);
+        // Retry-After принимает только целые секунды
+        this.retryAfter = Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        AdaptiveConcurrencyLimit limit = limitFor(exchange);
+        if (limit == null) {
+            return chain.filter(exchange);
+        }
+        if (!limit.tryAcquire()) {
+            return reject(exchange.getResponse());
+        }
+        long start = System.nanoTime();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        return chain.filter(exchange)
+                .doOnError(failure::set)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        limit.release();
+                    } else {
+                        limit.release(System.nanoTime() - start, overloaded(exchange, failure.get()));
+                    }
+                });
+    }
+
+    private AdaptiveConcurrencyLimit limitFor(ServerWebExchange exchange) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!path.startsWith(PAYMENTS_PATH) || path.startsWith(EXPORT_PATH) || path.startsWith(FEED_PATH)) {
+            return null;
+        }
+        HttpMethod method = exchange.getRequest().getMethod();
+        if (HttpMethod.POST.equals(method)) {
+            return writeLimit;
+        }
+        if (HttpMethod.GET.equals(method)) {
+            return readLimit;
+        }
+        return null;
+    }
+
+    private Mono<Void> reject(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+        return response.setComplete();
+    }
+
+    /**
+     * Признак перегрузки: ответ 5xx или ошибка, не превращенная в 4xx
+     */
+    private static boolean overloaded(ServerWebExchange exchange, Throwable failure) {
+        if (failure instanceof ResponseStatusException statusException) {
+            return statusException.getStatusCode().is5xxServerError();
+        }
+        if (failure != null) {
+            return true;
+        }
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        return status != null && status.is5xxServerError();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.payment.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysAppendedRecordsInOrder() throws IOException {
+        try (IngestJournal journal = open()) {
+            assertThat(journal.replay((payload, position) -> { })).isZero();
+            append(journal, "first", "second", "third");
+            journal.force();
+        }
+
+        assertThat(replay()).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    void replayStartsAfterCheckpoint() throws IOException {
+        try (IngestJournal journal = open()) {
+            journal.replay((payload, position) -> { });
+            List<IngestJournal.Position> positions = append(journal, "first", "second", "third");
+            journal.commit(positions.get(1));
+        }
+
+        assertThat(replay()).containsExactly("third");
+    }
+
+    @Test
+    void tornRecordEndsReplayAndIsOverwritten() throws IOException {
+        IngestJournal.Position first;
+        IngestJournal.Position second;
+        try (IngestJournal journal = open()) {
+            journal.replay((payload, position) -> { });
+            List<IngestJournal.Position> positions = append(journal, "first", "second-record");
+            first = positions.get(0);
+            second = positions.get(1);
+        }
+        // Сбой посреди записи: хвост второй записи не дошел до диска
+        int tornFrom = first.offset() + 8 + 4;
+        try (FileChannel channel = FileChannel.open(segmentFile(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(second.offset() - tornFrom), tornFrom);
+        }
+
+        try (IngestJournal journal = open()) {
+            List<String> replayed = new ArrayList<>();
+            journal.replay((payload, position) -> replayed.add(new String(payload, StandardCharsets.UTF_8)));
+            assertThat(replayed).containsExactly("first");
+            assertThat(append(journal, "third").get(0).offset()).isLessThan(second.offset());
+        }
+
+        assertThat(replay()).containsExactly("first", "third");
+    }
+
+    @Test
+    void commitRemovesProcessedSegments() throws IOException {
+        List<IngestJournal.Position> positions;
+        try (IngestJournal journal = new IngestJournal(directory, 64)) {
+            journal.replay((payload, position) -> { });
+            positions = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                journal.preallocate();
+                positions.add(journal.append(("record-" + i).getBytes(StandardCharsets.UTF_8)));
+            }
+            IngestJournal.Position last = positions.get(positions.size() - 1);
+            assertThat(last.segment()).isGreaterThan(1);
+            journal.commit(last);
+
+            assertThat(segmentIndexes()).allMatch(index -> index >= last.segment());
+        }
+    }
+
+    private IngestJournal open() throws IOException {
+        return new IngestJournal(directory, SEGMENT_SIZE);
+    }
+
+    private List<String> replay() throws IOException {
+        List<String> replayed = new ArrayList<>();
+        try (IngestJournal journal = open()) {
+            journal.replay((payload, position) -> replayed.add(new String(payload, StandardCharsets.UTF_8)));
+        }
+        return replayed;
+    }
+
+    private static List<IngestJournal.Position> append(IngestJournal journal, String... records) throws IOException {
+        List<IngestJournal.Position> positions = new ArrayList<>();
+        for (String record : records) {
+            positions.add(journal.append(record.getBytes(StandardCharsets.UTF_8)));
+        }
+        return positions;
+    }
+
+    private Path segmentFile() {
+        return directory.resolve("segment-000000000001.log");
+    }
+
+    private List<Long> segmentIndexes() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("segment-"))
+                    .map(name -> Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length())))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.payment.ingest;
+
+import com.example.payment.entity.PaymentEntity;
+import com.example.payment.metrics.PaymentMetrics;
+import com.example.payment.repository.PaymentStore;
+import com.example.payment.service.PaymentReadModels;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteBehindIngestQueueTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PaymentMetrics paymentMetrics = new PaymentMetrics(meterRegistry);
+    private final List<WriteBehindIngestQueue> queues = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        paymentMetrics.init();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (WriteBehindIngestQueue queue : queues) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void journalIsCreatedOnFirstEnqueue() throws IOException {
+        PaymentStore store = storeRejecting(Set.of());
+        WriteBehindIngestQueue queue = queue(store, mock(PaymentReadModels.class));
+        assertThat(Files.exists(directory.resolve("checkpoint"))).isFalse();
+
+        queue.enqueue(payment("TXN-1")).block(WAIT);
+
+        assertThat(IngestJournal.hasSegments(directory)).isTrue();
+    }
+
+    @Test
+    void badRowIsIsolatedAndMovedToDeadLetter() throws IOException {
+        PaymentStore store = storeRejecting(Set.of("TXN-3"));
+        PaymentReadModels readModels = mock(PaymentReadModels.class);
+        WriteBehindIngestQueue queue = queue(store, readModels);
+
+        for (int i = 1; i <= 5; i++) {
+            queue.enqueue(payment("TXN-" + i)).block(WAIT);
+        }
+
+        verify(readModels, timeout(WAIT.toMillis()).times(4)).onInserted(any());
+        Path deadLetters = directory.resolve("dead-letter.jsonl");
+        assertThat(deadLetters).exists();
+        List<String> lines = Files.readAllLines(deadLetters);
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0)).contains("TXN-3");
+        assertThat(meterRegistry.get("payment.ingest.async.dead.letters").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void unsavedRecordsAreReplayedAfterRestartAndCheckpointAdvances() throws Exception {
+        PaymentStore downStore = mock(PaymentStore.class);
+        when(downStore.insertAll(anyList()))
+                .thenReturn(Flux.error(new TransientDataAccessResourceException("connection refused")));
+        WriteBehindIngestQueue first = queue(downStore, mock(PaymentReadModels.class));
+        for (int i = 1; i <= 3; i++) {
+            first.enqueue(payment("TXN-" + i)).block(WAIT);
+        }
+        verify(downStore, timeout(WAIT.toMillis()).atLeastOnce()).insertAll(anyList());
+        first.shutdown();
+        queues.remove(first);
+
+        PaymentStore store = storeRejecting(Set.of());
+        PaymentReadModels readModels = mock(PaymentReadModels.class);
+        WriteBehindIngestQueue second = queue(store, readModels);
+        verify(readModels, timeout(WAIT.toMillis()).times(3)).onInserted(any());
+        second.shutdown();
+        queues.remove(second);
+
+        PaymentStore idleStore = storeRejecting(Set.of());
+        queue(idleStore, mock(PaymentReadModels.class));
+        Thread.sleep(300);
+        verify(idleStore, never()).insertAll(anyList());
+    }
+
+    /**
+     * Хранилище, которое вставляет все строки, но отвергает пачку с любым из transactionId
+     */
+    private static PaymentStore storeRejecting(Set<String> badTransactionIds) {
+        Set<UUID> inserted = ConcurrentHashMap.newKeySet();
+        PaymentStore store = mock(PaymentStore.class);
+        when(store.insertAll(anyList())).thenAnswer(invocation -> {
+            List<PaymentEntity> entities = invocation.getArgument(0);
+            if (entities.stream().anyMatch(entity -> badTransactionIds.contains(entity.getTransactionId()))) {
+                return Flux.error(new DataIntegrityViolationException("value too long for type character varying"));
+            }
+            List<UUID> ids = entities.stream().map(PaymentEntity::getId).filter(inserted::add).toList();
+            return Flux.fromIterable(ids);
+        });
+        return store;
+    }
+
+    private WriteBehindIngestQueue queue(PaymentStore store, PaymentReadModels readModels) throws IOException {
+        WriteBehindIngestQueue queue = new WriteBehindIngestQueue(store, readModels, paymentMetrics, objectMapper,
+                meterRegistry, 100, 10, Duration.ofMillis(200), directory, DataSize.ofKilobytes(64),
+                WriteBehindIngestQueue.Durability.BATCH, Duration.ofMillis(100));
+        queues.add(queue);
+        return queue;
+    }
+
+    private static PaymentEntity payment(String transactionId) {
+        PaymentEntity entity = PaymentEntity.builder()
+                .amount(new BigDecimal("100.00"))
+                .currency("RUB")
+                .status("COMPLETED")
+                .payerEmail("payer@example.com")
+                .transactionId(transactionId)
+                .build();
+        entity.markAsNew();
+        return entity;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.payment.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentSearchRepositoryTest {
+
+    private static final PaymentSearchCriteria CRITERIA = new PaymentSearchCriteria(
+            new BigDecimal("10.50"), new BigDecimal("100"), null, null, "RUB", "COMPLETED", null);
+
+    @Test
+    void compactStorageBindsRawCodes() {
+        PaymentSearchRepository repository = new PaymentSearchRepository(null, new PaymentStorageFormat(true));
+
+        PaymentSearchRepository.SearchStatement statement = repository.statement(CRITERIA, null, null, List.of(), 20);
+
+        assertThat(statement.sql()).isEqualTo("SELECT * FROM payments WHERE amount >= :minAmount "
+                + "AND amount <= :maxAmount AND currency = :currency AND status = :status "
+                + "ORDER BY created_at DESC, id DESC LIMIT :limit");
+        assertThat(statement.bindings())
+                .containsEntry("minAmount", 1050L)
+                .containsEntry("maxAmount", 10000L)
+                .containsEntry("currency", (short) 643)
+                .containsEntry("status", (short) 2);
+    }
+
+    @Test
+    void regularStorageBindsStringsAndDecimals() {
+        PaymentSearchRepository repository = new PaymentSearchRepository(null, new PaymentStorageFormat(false));
+
+        PaymentSearchRepository.SearchStatement statement = repository.statement(CRITERIA, null, null, List.of(), 20);
+
+        assertThat(statement.bindings())
+                .containsEntry("minAmount", new BigDecimal("10.50"))
+                .containsEntry("currency", "RUB")
+                .containsEntry("status", "COMPLETED");
+    }
+
+    @Test
+    void cursorAndProjectionAlwaysReadKeyColumns() {
+        PaymentSearchRepository repository = new PaymentSearchRepository(null, new PaymentStorageFormat(true));
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 17, 13, 45);
+        UUID id = UUID.randomUUID();
+
+        PaymentSearchRepository.SearchStatement statement = repository.statement(
+                new PaymentSearchCriteria(null, null, null, null, null, null, "ACC1"),
+                createdAt, id, List.of("amount"), 5);
+
+        assertThat(statement.sql()).isEqualTo("SELECT id, created_at, amount FROM payments "
+                + "WHERE recipient_account = :recipientAccount AND created_at <= :afterCreatedAt "
+                + "AND (created_at, id) < (:afterCreatedAt, :afterId) ORDER BY created_at DESC, id DESC LIMIT :limit");
+        assertThat(statement.bindings())
+                .containsEntry("afterCreatedAt", createdAt)
+                .containsEntry("afterId", id)
+                .containsEntry("limit", 5);
+    }
+
+    @Test
+    void unknownCurrencyInCompactStorageIsRejected() {
+        PaymentSearchRepository repository = new PaymentSearchRepository(null, new PaymentStorageFormat(true));
+
+        assertThatThrownBy(() -> repository.statement(
+                new PaymentSearchCriteria(null, null, null, null, "XXX", null, null), null, null, List.of(), 5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
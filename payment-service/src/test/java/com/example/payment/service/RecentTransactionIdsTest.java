@@ -0,0 +1,37 @@
+package com.example.payment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentTransactionIdsTest {
+
+    @Test
+    void evictsOldestWhenFull() {
+        RecentTransactionIds ids = new RecentTransactionIds(2, new SimpleMeterRegistry());
+
+        assertThat(ids.markSeen("TXN-1")).isTrue();
+        assertThat(ids.markSeen("TXN-2")).isTrue();
+        assertThat(ids.markSeen("TXN-1")).isFalse();
+        assertThat(ids.markSeen("TXN-3")).isTrue();
+
+        assertThat(ids.size()).isEqualTo(2);
+        assertThat(ids.markSeen("TXN-1")).isTrue();
+    }
+
+    @Test
+    void staleSlotDoesNotEvictIdMarkedAgainAfterForget() {
+        RecentTransactionIds ids = new RecentTransactionIds(2, new SimpleMeterRegistry());
+
+        ids.markSeen("TXN-1");
+        ids.forget("TXN-1");
+        ids.markSeen("TXN-2");
+        // Повторная отметка занимает слот первой и вытесняет ее, но не себя
+        assertThat(ids.markSeen("TXN-1")).isTrue();
+        ids.markSeen("TXN-3");
+
+        assertThat(ids.markSeen("TXN-1")).isFalse();
+        assertThat(ids.size()).isEqualTo(2);
+    }
+}
@@ -6,6 +6,9 @@ const saveSent = new Counter('save_sent');
 const saveCompleted = new Counter('save_completed');
 const readSent = new Counter('read_sent');
 const readCompleted = new Counter('read_completed');
+// 503 - запрос сброшен адаптивным лимитером (payment.limiter), считается отдельно от ошибок
+const saveShed = new Counter('save_shed');
+const readShed = new Counter('read_shed');
 
 export const options = {
   scenarios: {
@@ -36,13 +39,21 @@ const BASE_URL = 'http://localhost:8080';
 export function stageSaveExecutor() {
   saveSent.add(1);
   const saveRes = http.post(`${BASE_URL}/api/payments/fetch-and-save`, null, { timeout: '5s' });
-  const saveOk = check(saveRes, { 'save status': (r) => r.status === 201 || r.status === 200 || r.status === 500 });
+  if (saveRes.status === 503) {
+    saveShed.add(1);
+    return;
+  }
+  const saveOk = check(saveRes, { 'save status': (r) => r.status === 201 || r.status === 204 || r.status === 500 });
   if (saveOk) saveCompleted.add(1);
 }
 
 export function stageReadExecutor() {
   readSent.add(1);
   const readRes = http.get(`${BASE_URL}/api/payments?limit=10`, { timeout: '3s' });
+  if (readRes.status === 503) {
+    readShed.add(1);
+    return;
+  }
   const readOk = check(readRes, { 'read status': (r) => r.status === 200 });
   if (readOk) readCompleted.add(1);
 }
@@ -54,6 +65,8 @@ export function handleSummary(data) {
   const saveCompletedCount = data.metrics.save_completed ? data.metrics.save_completed.values.count : 0;
   const readSentCount = data.metrics.read_sent ? data.metrics.read_sent.values.count : 0;
   const readCompletedCount = data.metrics.read_completed ? data.metrics.read_completed.values.count : 0;
+  const saveShedCount = data.metrics.save_shed ? data.metrics.save_shed.values.count : 0;
+  const readShedCount = data.metrics.read_shed ? data.metrics.read_shed.values.count : 0;
 
   const testDuration = 5;
 
@@ -61,8 +74,8 @@ export function handleSummary(data) {
   const readRps = (readCompletedCount / testDuration).toFixed(2);
   const totalRps = ((saveCompletedCount + readCompletedCount) / testDuration).toFixed(2);
 
-  const saveErrors = saveSentCount - saveCompletedCount;
-  const readErrors = readSentCount - readCompletedCount;
+  const saveErrors = saveSentCount - saveCompletedCount - saveShedCount;
+  const readErrors = readSentCount - readCompletedCount - readShedCount;
 
   console.log('\n' + '='.repeat(85));
   console.log('РЕЗУЛЬТАТЫ НАГРУЗОЧНОГО ТЕСТА');
@@ -88,6 +101,7 @@ export function handleSummary(data) {
   console.log(`   • Общая скорость: ${totalRps} запросов/секунду`);
   console.log(`   • Запись: ${saveRps} записей/секунду`);
   console.log(`   • Чтение: ${readRps} чтений/секунду`);
+  console.log(`   • Сброшено лимитером (503): запись ${saveShedCount}, чтение ${readShedCount}`);
 
   return { stdout: '' };
 }
\ No newline at end of file
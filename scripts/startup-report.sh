@@ -0,0 +1,73 @@
+#!/bin/sh
+# Время до первого ответа и RSS payment-service для обычного jar, AOT+AppCDS и native image.
+# Нужны запущенные postgres и mock-payment-service (make up). Каждый вариант стартует отдельным
+# контейнером на порту REPORT_PORT в сети docker-compose; основной payment-service не трогается.
+# Использование: scripts/startup-report.sh [jar] [cds] [native]  (по умолчанию все три)
+set -e
+
+PORT=${REPORT_PORT:-18080}
+RUNS=${REPORT_RUNS:-3}
+LOAD=${REPORT_LOAD:-500}
+VARIANTS=${*:-jar cds native}
+NETWORK=$(docker network ls --format '{{.Name}}' | grep 'payment-network$' | head -1)
+if [ -z "$NETWORK" ]; then
+    echo "Сеть payment-network не найдена: сначала make up" >&2
+    exit 1
+fi
+cd "$(dirname "$0")/../payment-service"
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+# Память контейнера по cgroup (RSS процесса плюс кэш страниц), в МиБ
+rss_mib() {
+    docker stats --no-stream --format '{{.MemUsage}}' "$1" | cut -d/ -f1 | tr -d ' '
+}
+
+echo "| вариант | прогон | первый ответ, мс | готовность, мс | память после 1-го запроса | память после $LOAD запросов |"
+echo "|---|---|---|---|---|---|"
+for variant in $VARIANTS; do
+    case $variant in
+        jar) dockerfile=Dockerfile ;;
+        cds) dockerfile=Dockerfile.cds ;;
+        native) dockerfile=Dockerfile.native ;;
+        *) echo "Неизвестный вариант: $variant" >&2; exit 1 ;;
+    esac
+    docker build -q -f "$dockerfile" -t "payment-service:$variant" . >/dev/null
+
+    run=1
+    while [ "$run" -le "$RUNS" ]; do
+        name="payment-startup-$variant"
+        docker rm -f "$name" >/dev/null 2>&1 || true
+        start=$(now_ms)
+        docker run -d --name "$name" --network "$NETWORK" -p "$PORT:8080" \
+            -e DB_HOST=postgres -e MOCK_SERVICE_URL=http://mock-payment-service:8081 \
+            -e PAYMENT_JOURNAL_DIR=/tmp/ingest-journal \
+            "payment-service:$variant" >/dev/null
+
+        # Первый ответ: порт принимает запросы (прогрев еще может идти)
+        until curl -sf -o /dev/null "http://localhost:$PORT/api/payments?limit=10"; do
+            sleep 0.02
+        done
+        first=$(( $(now_ms) - start ))
+        rss_first=$(rss_mib "$name")
+
+        # Готовность: прогрев завершен, балансировщик начнет слать трафик
+        until curl -sf -o /dev/null "http://localhost:$PORT/actuator/health/readiness"; do
+            sleep 0.02
+        done
+        ready=$(( $(now_ms) - start ))
+
+        i=0
+        while [ "$i" -lt "$LOAD" ]; do
+            curl -sf -o /dev/null "http://localhost:$PORT/api/payments?limit=10" || true
+            i=$((i + 1))
+        done
+        rss_load=$(rss_mib "$name")
+
+        echo "| $variant | $run | $first | $ready | $rss_first | $rss_load |"
+        docker rm -f "$name" >/dev/null
+        run=$((run + 1))
+    done
+done